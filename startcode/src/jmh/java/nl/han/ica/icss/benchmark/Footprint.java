@@ -0,0 +1,57 @@
+package nl.han.ica.icss.benchmark;
+
+import nl.han.ica.icss.Pipeline;
+import nl.han.ica.icss.ast.AST;
+import nl.han.ica.icss.ast.CompactAST;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.ref.Reference;
+
+/**
+ * Reports how much heap a parsed stylesheet keeps alive per node, as object tree and as {@link CompactAST}.
+ * Not a JMH benchmark: retained size is measured as the difference in used heap after a full GC.
+ *
+ * <pre>mvn -P benchmark compile exec:exec -Dbenchmark.main=nl.han.ica.icss.benchmark.Footprint -Djmh.args="level2 100000"</pre>
+ */
+public final class Footprint {
+
+    private Footprint() {
+    }
+
+    public static void main(final String[] args) throws Exception {
+        final String level = args.length > 0 ? args[0] : "level2";
+        final int rules = args.length > 1 ? Integer.parseInt(args[1]) : 100000;
+        final String input = Stylesheets.scale(level + ".icss", rules);
+
+        final Pipeline pipeline = new Pipeline();
+
+        long before = usedHeap();
+        pipeline.parseString(input);
+        final AST ast = pipeline.getAST();
+        final long objectBytes = usedHeap() - before;
+        //Drop the pipeline's references to the object tree before measuring the compact one
+        pipeline.parseString("");
+
+        before = usedHeap();
+        final CompactAST compact = pipeline.parseCompact(input);
+        final long compactBytes = usedHeap() - before;
+
+        final int nodes = compact.getNodeCount();
+        System.out.printf("%s, %d rules, %d nodes%n", level, rules, nodes);
+        System.out.printf("object tree: %,d bytes, %.1f bytes/node%n", objectBytes, (double) objectBytes / nodes);
+        System.out.printf("compact AST: %,d bytes, %.1f bytes/node (arrays and strings alone: %.1f)%n",
+                compactBytes, (double) compactBytes / nodes, (double) compact.getByteSize() / nodes);
+
+        Reference.reachabilityFence(ast);
+        Reference.reachabilityFence(compact);
+    }
+
+    private static long usedHeap() {
+        final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+}
@@ -0,0 +1,130 @@
+package nl.han.ica.icss.benchmark;
+
+import nl.han.ica.icss.Pipeline;
+import nl.han.ica.icss.ast.AST;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks every stage of the {@link Pipeline} on its own and the whole compile end to end.
+ * Run with the gc profiler to get the allocation rate next to throughput and latency:
+ *
+ * <pre>mvn -P benchmark compile exec:exec -Djmh.args="PipelineBenchmark -p rules=10000"</pre>
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms6g", "-Xmx6g"})
+public class PipelineBenchmark {
+
+    /**
+     * A freshly parsed stylesheet, ready to be checked.
+     * Checking and transforming change the AST, so every invocation gets its own copy.
+     */
+    @State(Scope.Thread)
+    public static class Parsed {
+        public Pipeline pipeline;
+
+        @Param({"false", "true"})
+        public boolean parallelChecking;
+
+        @Setup(Level.Invocation)
+        public void parse(final StylesheetState stylesheet) {
+            pipeline = new Pipeline();
+            pipeline.setParallelChecking(parallelChecking);
+            pipeline.parseString(stylesheet.source);
+        }
+    }
+
+    /**
+     * Which lexer and parser the parse uses, Antlr's generated ones or the hand-written
+     * ICSSScanner and ASTParser.
+     */
+    @State(Scope.Benchmark)
+    public static class Parsing {
+        @Param({"false", "true"})
+        public boolean handWrittenLexer;
+
+        @Param({"false", "true"})
+        public boolean directParsing;
+    }
+
+    @State(Scope.Thread)
+    public static class Checked {
+        public Pipeline pipeline;
+
+        @Setup(Level.Invocation)
+        public void check(final StylesheetState stylesheet) {
+            pipeline = new Pipeline();
+            pipeline.parseString(stylesheet.source);
+            pipeline.check();
+        }
+    }
+
+    /**
+     * Generating leaves the AST untouched, so one transformed stylesheet is enough per trial.
+     */
+    @State(Scope.Thread)
+    public static class Transformed {
+        public Pipeline pipeline;
+
+        @Param({"false", "true"})
+        public boolean parallelGenerating;
+
+        @Setup(Level.Trial)
+        public void transform(final StylesheetState stylesheet) {
+            pipeline = new Pipeline();
+            pipeline.setParallelGenerating(parallelGenerating);
+            pipeline.parseString(stylesheet.source);
+            pipeline.check();
+            pipeline.transform();
+        }
+    }
+
+    @Benchmark
+    public AST parse(final StylesheetState stylesheet, final Parsing parsing) {
+        final Pipeline pipeline = new Pipeline();
+        pipeline.setHandWrittenLexer(parsing.handWrittenLexer);
+        pipeline.setDirectParsing(parsing.directParsing);
+        pipeline.parseString(stylesheet.source);
+        return pipeline.getAST();
+    }
+
+    @Benchmark
+    public boolean check(final Parsed parsed) {
+        return parsed.pipeline.check();
+    }
+
+    @Benchmark
+    public AST transform(final Checked checked) {
+        checked.pipeline.transform();
+        return checked.pipeline.getAST();
+    }
+
+    @Benchmark
+    public String generate(final Transformed transformed) {
+        return transformed.pipeline.generate();
+    }
+
+    @Benchmark
+    public String compile(final StylesheetState stylesheet) {
+        final Pipeline pipeline = new Pipeline();
+        pipeline.parseString(stylesheet.source);
+        pipeline.check();
+        pipeline.transform();
+        return pipeline.generate();
+    }
+}
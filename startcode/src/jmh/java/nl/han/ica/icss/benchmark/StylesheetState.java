@@ -0,0 +1,29 @@
+package nl.han.ica.icss.benchmark;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+
+/**
+ * The ICSS source text every benchmark works on: one of the example levels, scaled up.
+ */
+@State(Scope.Benchmark)
+public class StylesheetState {
+
+    @Param({"level0", "level1", "level2", "level3"})
+    public String level;
+
+    @Param({"10000", "100000", "1000000"})
+    public int rules;
+
+    public String source;
+
+    @Setup(Level.Trial)
+    public void load() throws IOException {
+        source = Stylesheets.scale(level + ".icss", rules);
+    }
+}
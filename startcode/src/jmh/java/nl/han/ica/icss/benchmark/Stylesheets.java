@@ -0,0 +1,79 @@
+package nl.han.ica.icss.benchmark;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Builds large benchmark inputs out of the example stylesheets.
+ * The variable assignments at the top of a level are kept once, the style rules
+ * below them are repeated until the requested number of rules is reached.
+ */
+public final class Stylesheets {
+
+    private Stylesheets() {
+    }
+
+    public static String scale(final String resource, final int rules) throws IOException {
+        final String text = load(resource);
+
+        final int rulesStart = findRulesStart(text);
+        final String header = text.substring(0, rulesStart);
+        final String block = text.substring(rulesStart) + "\n";
+        final int rulesPerBlock = countRules(block);
+
+        final int repeats = (rules + rulesPerBlock - 1) / rulesPerBlock;
+        final StringBuilder builder = new StringBuilder(header.length() + block.length() * repeats);
+        builder.append(header);
+        for (int i = 0; i < repeats; i++) {
+            builder.append(block);
+        }
+        return builder.toString();
+    }
+
+    private static String load(final String resource) throws IOException {
+        final ClassLoader classLoader = Stylesheets.class.getClassLoader();
+        try (InputStream inputStream = classLoader.getResourceAsStream(resource)) {
+            if (inputStream == null) {
+                throw new IOException("Resource not found: " + resource);
+            }
+            return new String(inputStream.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * The rules start at the first line that is neither blank nor a variable assignment.
+     */
+    private static int findRulesStart(final String text) {
+        int lineStart = 0;
+        while (lineStart < text.length()) {
+            int lineEnd = text.indexOf('\n', lineStart);
+            if (lineEnd < 0) {
+                lineEnd = text.length();
+            }
+            final String line = text.substring(lineStart, lineEnd).trim();
+            if (!line.isEmpty() && !line.contains(":=")) {
+                return lineStart;
+            }
+            lineStart = lineEnd + 1;
+        }
+        return text.length();
+    }
+
+    private static int countRules(final String block) {
+        int depth = 0;
+        int rules = 0;
+        for (int i = 0; i < block.length(); i++) {
+            final char c = block.charAt(i);
+            if (c == '{') {
+                if (depth == 0) {
+                    rules++;
+                }
+                depth++;
+            } else if (c == '}') {
+                depth--;
+            }
+        }
+        return Math.max(rules, 1);
+    }
+}
@@ -0,0 +1,127 @@
+package nl.han.ica.icss;
+
+import nl.han.ica.icss.ast.AST;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A size-bounded, least-recently-used cache of compilation results, keyed by a SHA-256 hash of the
+ * input text. A pipeline with a cache turns {@link Pipeline#compile(String)} of an input it has
+ * seen before into a hash lookup.
+ * <p>
+ * The cache can be shared between pipelines on different threads. The cached ASTs are shared too,
+ * so they must not be changed after they have been cached: a pipeline refuses to check or
+ * transform an AST it shares with the cache.
+ */
+public class CompilationCache {
+
+    /**
+     * The state a pipeline ends up in after compiling an input.
+     */
+    public static class Entry {
+        public final AST ast;
+        public final List<String> errors;
+        public final boolean parsed;
+        public final boolean checked;
+        public final boolean transformed;
+        //null when the input has errors
+        public final String css;
+
+        public Entry(AST ast, List<String> errors, boolean parsed, boolean checked, boolean transformed, String css) {
+            this.ast = ast;
+            this.errors = List.copyOf(errors);
+            this.parsed = parsed;
+            this.checked = checked;
+            this.transformed = transformed;
+            this.css = css;
+        }
+    }
+
+    private final int maxEntries;
+    private final LinkedHashMap<String, Entry> entries;
+
+    private long hits = 0;
+    private long misses = 0;
+    private long evictions = 0;
+
+    public CompilationCache(int maxEntries) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("A cache needs room for at least one entry");
+        }
+        this.maxEntries = maxEntries;
+        //Access order makes the eldest entry the least recently used one
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CompilationCache.Entry> eldest) {
+                if (size() > CompilationCache.this.maxEntries) {
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    public static String key(String input) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(input.getBytes(StandardCharsets.UTF_8));
+            StringBuilder key = new StringBuilder(hash.length * 2);
+            for (byte b : hash) {
+                key.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+            }
+            return key.toString();
+        } catch (NoSuchAlgorithmException e) {
+            //Every Java platform has SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public synchronized Entry get(String key) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            misses++;
+        } else {
+            hits++;
+        }
+        return entry;
+    }
+
+    public synchronized void put(String key, Entry entry) {
+        entries.put(key, entry);
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "CompilationCache[" + entries.size() + "/" + maxEntries + " entries, " + hits + " hits, "
+                + misses + " misses, " + evictions + " evictions]";
+    }
+}
@@ -0,0 +1,188 @@
+package nl.han.ica.icss;
+
+import nl.han.ica.icss.ast.AST;
+import nl.han.ica.icss.ast.ASTNode;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Where the time of a compilation went: wall time and allocated bytes of every stage that ran,
+ * and the size of what each stage produced.
+ * <p>
+ * A {@link Pipeline} starts new statistics with every parse and adds the later stages to them,
+ * see {@link Pipeline#getStats()}. Allocations are read from the {@link ThreadMXBean} of the
+ * thread that ran the stage, so the parallel check and generate modes only count what the calling
+ * thread allocated. On a JVM that can't measure allocations they are -1.
+ */
+public class CompilationStats {
+
+    public enum Stage {
+        LEX("lex"),
+        PARSE("parse"),
+        BUILD_AST("build AST"),
+        CHECK("check"),
+        TRANSFORM("transform"),
+        GENERATE("generate");
+
+        private final String description;
+
+        Stage(String description) {
+            this.description = description;
+        }
+
+        @Override
+        public String toString() {
+            return description;
+        }
+    }
+
+    public static final long UNKNOWN = -1;
+
+    private static final com.sun.management.ThreadMXBean THREADS = allocationCounter();
+
+    private final long[] nanos = new long[Stage.values().length];
+    private final long[] allocatedBytes = new long[Stage.values().length];
+    private final boolean[] ran = new boolean[Stage.values().length];
+
+    private long tokenCount = UNKNOWN;
+    private long nodeCount = UNKNOWN;
+    private long maxDepth = UNKNOWN;
+    private long outputSize = UNKNOWN;
+
+    //Set by start, read by stop
+    private long startNanos;
+    private long startBytes;
+
+    private static com.sun.management.ThreadMXBean allocationCounter() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean counter = (com.sun.management.ThreadMXBean) threads;
+            if (counter.isThreadAllocatedMemorySupported() && counter.isThreadAllocatedMemoryEnabled()) {
+                return counter;
+            }
+        }
+        return null;
+    }
+
+    private static long allocatedByThisThread() {
+        return THREADS == null ? UNKNOWN : THREADS.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    /**
+     * Starts measuring a stage, {@link #stop(Stage)} records it. Stages are measured one at a time.
+     */
+    public void start() {
+        startBytes = allocatedByThisThread();
+        startNanos = System.nanoTime();
+    }
+
+    /**
+     * Records the time and allocations since {@link #start()} as the given stage. A stage that
+     * runs more than once adds up.
+     */
+    public void stop(Stage stage) {
+        long elapsed = System.nanoTime() - startNanos;
+        long bytes = allocatedByThisThread();
+        int index = stage.ordinal();
+        nanos[index] += elapsed;
+        allocatedBytes[index] = bytes == UNKNOWN || startBytes == UNKNOWN ? UNKNOWN : allocatedBytes[index] + bytes - startBytes;
+        ran[index] = true;
+    }
+
+    public boolean hasRun(Stage stage) {
+        return ran[stage.ordinal()];
+    }
+
+    public long getNanos(Stage stage) {
+        return nanos[stage.ordinal()];
+    }
+
+    /**
+     * @return the bytes allocated by the stage, or UNKNOWN
+     */
+    public long getAllocatedBytes(Stage stage) {
+        return allocatedBytes[stage.ordinal()];
+    }
+
+    /**
+     * @return the tokens the lexer produced, the end of file included, or UNKNOWN when the
+     * input was not lexed as a whole (an incremental reparse)
+     */
+    public long getTokenCount() {
+        return tokenCount;
+    }
+
+    public void setTokenCount(long tokenCount) {
+        this.tokenCount = tokenCount;
+    }
+
+    /**
+     * @return the nodes in the AST after parsing, or UNKNOWN
+     */
+    public long getNodeCount() {
+        return nodeCount;
+    }
+
+    /**
+     * @return the depth of the AST after parsing, the stylesheet being 1, or UNKNOWN
+     */
+    public long getMaxDepth() {
+        return maxDepth;
+    }
+
+    /**
+     * Counts the nodes and the depth of the tree.
+     */
+    public void measure(AST ast) {
+        nodeCount = 0;
+        maxDepth = 0;
+        measure(ast.root, 1);
+    }
+
+    private void measure(ASTNode node, int depth) {
+        nodeCount++;
+        maxDepth = Math.max(maxDepth, depth);
+        for (int i = 0; i < node.getChildCount(); i++) {
+            measure(node.getChild(i), depth + 1);
+        }
+    }
+
+    /**
+     * @return the characters of CSS generated, or UNKNOWN
+     */
+    public long getOutputSize() {
+        return outputSize;
+    }
+
+    public void setOutputSize(long outputSize) {
+        this.outputSize = outputSize;
+    }
+
+    /**
+     * One line per stage that ran and one with the sizes.
+     */
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder();
+        for (Stage stage : Stage.values()) {
+            if (!hasRun(stage)) {
+                continue;
+            }
+            text.append(String.format("%-10s %8.1f ms", stage, getNanos(stage) / 1e6));
+            if (getAllocatedBytes(stage) != UNKNOWN) {
+                text.append(String.format(" %10.1f MB allocated", getAllocatedBytes(stage) / 1e6));
+            }
+            text.append('\n');
+        }
+        text.append("tokens ").append(format(tokenCount));
+        text.append(", nodes ").append(format(nodeCount));
+        text.append(", depth ").append(format(maxDepth));
+        text.append(", output ").append(format(outputSize)).append(" chars");
+        return text.toString();
+    }
+
+    private static String format(long count) {
+        return count == UNKNOWN ? "-" : Long.toString(count);
+    }
+}
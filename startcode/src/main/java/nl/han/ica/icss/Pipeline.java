@@ -1,25 +1,54 @@
 package nl.han.ica.icss;
 
 import nl.han.ica.icss.ast.AST;
+import nl.han.ica.icss.ast.ASTFile;
+import nl.han.ica.icss.ast.ASTNode;
+import nl.han.ica.icss.ast.Cancellation;
+import nl.han.ica.icss.ast.CompactAST;
+import nl.han.ica.icss.ast.Stylesheet;
+import nl.han.ica.icss.ast.VariableAssignment;
 import nl.han.ica.icss.checker.Checker;
 import nl.han.ica.icss.checker.SemanticError;
+import nl.han.ica.icss.events.BuildASTEvent;
+import nl.han.ica.icss.events.CheckEvent;
+import nl.han.ica.icss.events.GenerateEvent;
+import nl.han.ica.icss.events.ParseEvent;
+import nl.han.ica.icss.events.StageEvent;
+import nl.han.ica.icss.events.TransformEvent;
 import nl.han.ica.icss.generator.Generator;
 import nl.han.ica.icss.parser.ASTListener;
+import nl.han.ica.icss.parser.ASTParser;
+import nl.han.ica.icss.parser.CancellableTokenStream;
+import nl.han.ica.icss.parser.CompactASTListener;
 import nl.han.ica.icss.parser.ICSSLexer;
 import nl.han.ica.icss.parser.ICSSParser;
+import nl.han.ica.icss.parser.IncrementalParser;
+import nl.han.ica.icss.parser.MappedCharStream;
+import nl.han.ica.icss.parser.ScannerTokenSource;
 import nl.han.ica.icss.transforms.EvalExpressions;
+import nl.han.ica.icss.transforms.FusedTransform;
 import nl.han.ica.icss.transforms.RemoveIf;
 import org.antlr.v4.runtime.*;
 import org.antlr.v4.runtime.atn.ATNConfigSet;
+import org.antlr.v4.runtime.atn.PredictionMode;
 import org.antlr.v4.runtime.dfa.DFA;
 import org.antlr.v4.runtime.misc.ParseCancellationException;
-import org.antlr.v4.runtime.tree.ParseTree;
 import org.antlr.v4.runtime.tree.ParseTreeWalker;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.BitSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.concurrent.CancellationException;
 
+/**
+ * Runs the stages of the compiler. When the thread running a stage is interrupted, the stage stops
+ * between statements with a {@link CancellationException}, see {@link Cancellation}. A cancelled
+ * parse leaves an empty AST behind, a cancelled check or transform a partly checked or transformed one.
+ */
 public class Pipeline implements ANTLRErrorListener {
 
     private AST ast;
@@ -28,6 +57,35 @@ public class Pipeline implements ANTLRErrorListener {
     private boolean transformed = false;
     private List<String> errors;
 
+    //Parse with SLL prediction first and only fall back to full LL when that fails
+    private boolean twoStageParsing = true;
+    private int parseCount = 0;
+    private int fallbackCount = 0;
+    //Lex with the hand-written ICSSScanner instead of Antlr's generated lexer
+    private boolean handWrittenLexer = false;
+    //Parse valid input with the hand-written ASTParser instead of Antlr's parser and ASTListener
+    private boolean directParsing = false;
+
+    //Check the style rules concurrently, see Checker.checkParallel
+    private boolean parallelChecking = false;
+    //Generate big stylesheets in chunks concurrently, see Generator.generateParallel
+    private boolean parallelGenerating = false;
+
+    //Keeps the statements of the last parse around for reparseString
+    private IncrementalParser incrementalParser = new IncrementalParser();
+    private boolean errorsInAST = false;
+
+    //Optional cache of complete compilations, see compile
+    private CompilationCache cache;
+    //The AST is shared with the cache, so check and transform must leave it alone
+    private boolean cachedAST = false;
+
+    //Started by every parse, the later stages add to it
+    private CompilationStats stats = new CompilationStats();
+    //What the last parse read, for the Flight Recorder events
+    private String sourceName;
+    private long inputSize;
+
     public Pipeline() {
         errors = new ArrayList<>();
     }
@@ -47,48 +105,314 @@ public class Pipeline implements ANTLRErrorListener {
     public boolean isTransformed() {
         return transformed;
     }
+    public boolean isTwoStageParsing() {
+        return twoStageParsing;
+    }
+    public void setTwoStageParsing(boolean twoStageParsing) {
+        this.twoStageParsing = twoStageParsing;
+    }
+    public boolean isHandWrittenLexer() {
+        return handWrittenLexer;
+    }
+    public void setHandWrittenLexer(boolean handWrittenLexer) {
+        this.handWrittenLexer = handWrittenLexer;
+    }
+    public boolean isDirectParsing() {
+        return directParsing;
+    }
+    public void setDirectParsing(boolean directParsing) {
+        this.directParsing = directParsing;
+    }
+    public boolean isParallelChecking() {
+        return parallelChecking;
+    }
+    public void setParallelChecking(boolean parallelChecking) {
+        this.parallelChecking = parallelChecking;
+    }
+    public boolean isParallelGenerating() {
+        return parallelGenerating;
+    }
+    public void setParallelGenerating(boolean parallelGenerating) {
+        this.parallelGenerating = parallelGenerating;
+    }
+    /*
+     Number of inputs parsed by this pipeline and how many of those needed the
+     full LL fallback of the two-stage parse.
+     */
+    public int getParseCount() {
+        return parseCount;
+    }
+    public int getFallbackCount() {
+        return fallbackCount;
+    }
+    public CompilationStats getStats() {
+        return stats;
+    }
+    public CompilationCache getCache() {
+        return cache;
+    }
+    public void setCache(CompilationCache cache) {
+        this.cache = cache;
+    }
+
+    /*
+     Runs all stages on the input and returns the generated CSS, or null when the input has errors.
+     With a cache, an input that was compiled before is looked up instead. The AST is then shared
+     with the cache: check and transform refuse to run on it until the next parse or load.
+     */
+    public String compile(String input) {
+        String key = null;
+        if (cache != null) {
+            key = CompilationCache.key(input);
+            CompilationCache.Entry entry = cache.get(key);
+            if (entry != null) {
+                stats = new CompilationStats();
+                incrementalParser.invalidate();
+                ast = entry.ast;
+                errors.clear();
+                errors.addAll(entry.errors);
+                parsed = entry.parsed;
+                checked = entry.checked;
+                transformed = entry.transformed;
+                errorsInAST = !entry.errors.isEmpty();
+                cachedAST = true;
+                return entry.css;
+            }
+        }
+
+        String css = null;
+        parseString(input);
+        if (parsed && check()) {
+            transform();
+            css = generate();
+        }
+
+        if (cache != null) {
+            cache.put(key, new CompilationCache.Entry(ast, errors, parsed, checked, transformed, css));
+            //reparseString would reuse the cached statements
+            incrementalParser.invalidate();
+            cachedAST = true;
+        }
+        return css;
+    }
 
     public void parseString(String input) {
+        parse(CharStreams.fromString(input), input);
+    }
 
-        //Lex (with Antlr's generated lexer)
-        CharStream inputStream = CharStreams.fromString(input);
-        ICSSLexer lexer = new ICSSLexer(inputStream);
-        lexer.removeErrorListeners();
-        lexer.addErrorListener(this);
+    /*
+     Parses a file without reading it into a String first: ASCII files are lexed straight from
+     a memory-mapped buffer. There is no text to reparse afterwards, so reparseString starts over.
+     */
+    public void parse(Path path) throws IOException {
+        parse(MappedCharStream.fromPath(path), null);
+    }
+
+    //input is the text of inputStream when there is one, for reparseString
+    private void parse(CharStream inputStream, String input) {
+
+        stats = new CompilationStats();
+        sourceName = IntStream.UNKNOWN_SOURCE_NAME.equals(inputStream.getSourceName()) ? null : inputStream.getSourceName();
+        inputSize = inputStream.size();
+        ParseEvent parseEvent = new ParseEvent();
+        BuildASTEvent buildEvent = null;
+
+        //Lex (with Antlr's generated lexer or the hand-written one)
+        parseEvent.begin();
+        stats.start();
+        TokenSource lexer = createLexer(inputStream);
         errors.clear();
         try {
-            CommonTokenStream tokens = new CommonTokenStream(lexer);
+            //The parser would buffer all tokens anyway, lexing them up front only makes it measurable
+            CommonTokenStream tokens = new CancellableTokenStream(lexer);
+            tokens.fill();
+            stats.stop(CompilationStats.Stage.LEX);
+            stats.setTokenCount(tokens.size());
+            Cancellation.checkInterrupted();
 
-            //Parse (with Antlr's generated parser)
-            ICSSParser parser = new ICSSParser(tokens);
-            parser.removeErrorListeners();
-            parser.addErrorListener(this);
+            stats.start();
+            parseCount++;
+            if (directParsing && errors.isEmpty() && parseDirect(tokens.getTokens(), input)) {
+                //Parsing built the AST, there is no separate stage for it
+                stats.stop(CompilationStats.Stage.PARSE);
+                parseEvent.end();
+                stats.measure(ast);
+            } else {
+                //Parse (with Antlr's generated parser)
+                ICSSParser parser = new ICSSParser(tokens);
+                ICSSParser.StylesheetContext parseTree = twoStageParsing ? parseTwoStage(parser) : parseFullContext(parser);
+                stats.stop(CompilationStats.Stage.PARSE);
+                parseEvent.end();
+                Cancellation.checkInterrupted();
 
-            ParseTree parseTree = parser.stylesheet();
+                //Extract AST from the Antlr parse tree
+                buildEvent = new BuildASTEvent();
+                buildEvent.begin();
+                stats.start();
+                ASTListener listener = new ASTListener();
+                ParseTreeWalker walker = new ParseTreeWalker();
+                walker.walk(listener, parseTree);
 
-            //Extract AST from the Antlr parse tree
-            ASTListener listener = new ASTListener();
-            ParseTreeWalker walker = new ParseTreeWalker();
-            walker.walk(listener, parseTree);
+                this.ast = listener.getAST();
+                stats.stop(CompilationStats.Stage.BUILD_AST);
+                buildEvent.end();
+                stats.measure(ast);
 
-            this.ast = listener.getAST();
+                if (errors.isEmpty() && input != null) {
+                    incrementalParser.reset(input, parseTree, ast.root);
+                } else {
+                    incrementalParser.invalidate();
+                }
+            }
 
         } catch (RecognitionException e) {
             this.ast = new AST();
+            incrementalParser.invalidate();
             errors.add(e.getMessage());
 
         } catch (ParseCancellationException e) {
             this.ast = new AST();
+            incrementalParser.invalidate();
             errors.add("Syntax error");
+
+        } catch (CancellationException e) {
+            this.ast = new AST();
+            incrementalParser.invalidate();
+            parsed = checked = transformed = false;
+            errorsInAST = cachedAST = false;
+            throw e;
         }
         parsed = errors.isEmpty();
         checked = transformed = false;
+        errorsInAST = false;
+        cachedAST = false;
+
+        if (parseEvent.shouldCommit()) {
+            parseEvent.tokenCount = stats.getTokenCount();
+            commit(parseEvent);
+        }
+        if (buildEvent != null) {
+            commit(buildEvent);
+        }
+    }
+
+    /*
+     Parses the tokens straight into the AST with the hand-written parser. Returns false on a syntax
+     error, Antlr then parses the same tokens again for its error messages and recovery.
+     */
+    private boolean parseDirect(List<Token> tokens, String input) {
+        ASTParser parser = new ASTParser(tokens);
+        try {
+            this.ast = parser.parse();
+        } catch (ParseCancellationException e) {
+            return false;
+        }
+        if (input != null) {
+            incrementalParser.reset(input, ast.root, parser.getStatementStarts(), parser.getStatementEnds());
+        } else {
+            incrementalParser.invalidate();
+        }
+        return true;
+    }
+
+    //Both lexers report their errors to this pipeline
+    private TokenSource createLexer(CharStream inputStream) {
+        if (handWrittenLexer) {
+            ScannerTokenSource lexer = new ScannerTokenSource(inputStream);
+            lexer.removeErrorListeners();
+            lexer.addErrorListener(this);
+            return lexer;
+        }
+        ICSSLexer lexer = new ICSSLexer(inputStream);
+        lexer.removeErrorListeners();
+        lexer.addErrorListener(this);
+        return lexer;
+    }
+
+    /*
+     Parses an edited version of the previously parsed input. Only the top-level statements
+     that overlap the edit are parsed again, the others are reused from the previous AST.
+     Falls back to parseString when there is no usable previous parse or the edit has errors.
+     */
+    public void reparseString(String input) {
+        CompilationStats reparseStats = new CompilationStats();
+        ParseEvent parseEvent = new ParseEvent();
+        parseEvent.begin();
+        reparseStats.start();
+        Stylesheet stylesheet = incrementalParser.reparse(input);
+        if (stylesheet == null) {
+            parseString(input);
+            return;
+        }
+        errors.clear();
+        this.ast = new AST(stylesheet);
+        //Lexing, parsing and building the edited statements can't be told apart
+        reparseStats.stop(CompilationStats.Stage.PARSE);
+        reparseStats.measure(ast);
+        stats = reparseStats;
+        parseEvent.end();
+        sourceName = null;
+        inputSize = input.length();
+        //Reused statements may still carry errors of an earlier check
+        if (errorsInAST) {
+            ast.clearErrors();
+            errorsInAST = false;
+        }
+        parsed = true;
+        checked = transformed = false;
+        cachedAST = false;
+
+        if (parseEvent.shouldCommit()) {
+            parseEvent.tokenCount = CompilationStats.UNKNOWN;
+            commit(parseEvent);
+        }
     }
+
+    private ICSSParser.StylesheetContext parseFullContext(ICSSParser parser) {
+        parser.removeErrorListeners();
+        parser.addErrorListener(this);
+        parser.setErrorHandler(new DefaultErrorStrategy());
+        parser.getInterpreter().setPredictionMode(PredictionMode.LL);
+
+        return parser.stylesheet();
+    }
+
+    /*
+     SLL prediction is much cheaper than full LL but may fail on input that LL accepts.
+     When it succeeds the tree yields the same AST, so we bail out at the first error
+     and only then parse again in LL mode, which also produces the usual error messages.
+     */
+    private ICSSParser.StylesheetContext parseTwoStage(ICSSParser parser) {
+        parser.removeErrorListeners();
+        parser.setErrorHandler(new BailErrorStrategy());
+        parser.getInterpreter().setPredictionMode(PredictionMode.SLL);
+        try {
+            return parser.stylesheet();
+        } catch (ParseCancellationException e) {
+            fallbackCount++;
+            parser.reset();
+            return parseFullContext(parser);
+        }
+    }
+
     public boolean check() {
             if(ast == null)
                 return false;
+            requireOwnAST();
 
-           (new Checker()).check(this.ast);
+            //A cancelled check leaves errors on the nodes it got to
+            errorsInAST = true;
+            checked = transformed = false;
+            CheckEvent event = new CheckEvent();
+            event.begin();
+            stats.start();
+            if (parallelChecking) {
+                (new Checker()).checkParallel(this.ast);
+            } else {
+                (new Checker()).check(this.ast);
+            }
+            stats.stop(CompilationStats.Stage.CHECK);
+            event.end();
 
             ArrayList<SemanticError> errors = this.ast.getErrors();
             if (!errors.isEmpty()) {
@@ -96,23 +420,217 @@ public class Pipeline implements ANTLRErrorListener {
                     this.errors.add(e.toString());
                 }
             }
+            commit(event);
 
             checked = errors.isEmpty();
             transformed = false;
             return errors.isEmpty();
     }
+    private void requireOwnAST() {
+        if (cachedAST) {
+            throw new IllegalStateException("The AST is shared with the compilation cache and can't be changed");
+        }
+    }
+
     public void transform() {
         if(ast == null)
             return;
+        requireOwnAST();
+
+        //The transforms rewrite the statements, they can't be reused by reparseString anymore
+        incrementalParser.invalidate();
+        transformed = false;
 
-        (new EvalExpressions()).apply(ast);
-        (new RemoveIf()).apply(ast);
+        //Evaluate and remove if-clauses in a single walk over the tree
+        FusedTransform transform = new FusedTransform(new EvalExpressions(), new RemoveIf());
+        TransformEvent event = new TransformEvent();
+        event.begin();
+        stats.start();
+        transform.apply(ast);
+        stats.stop(CompilationStats.Stage.TRANSFORM);
+        event.end();
+        if (event.shouldCommit()) {
+            event.transform = transform.toString();
+            commit(event);
+        }
 
         transformed = errors.isEmpty();
     }
     public String generate() {
         Generator generator = new Generator();
-        return generator.generate(ast);
+        GenerateEvent event = new GenerateEvent();
+        event.begin();
+        stats.start();
+        String css = parallelGenerating ? generator.generateParallel(ast) : generator.generate(ast);
+        stats.stop(CompilationStats.Stage.GENERATE);
+        stats.setOutputSize(css.length());
+        commit(event);
+        return css;
+    }
+    /*
+     Streams the generated CSS into the given output instead of building one big String.
+     */
+    public void generate(Appendable out) throws IOException {
+        Generator generator = new Generator();
+        CountingAppendable counted = new CountingAppendable(out);
+        GenerateEvent event = new GenerateEvent();
+        event.begin();
+        stats.start();
+        if (parallelGenerating) {
+            generator.generateParallel(ast, counted);
+        } else {
+            generator.generate(ast, counted);
+        }
+        stats.stop(CompilationStats.Stage.GENERATE);
+        stats.setOutputSize(counted.count);
+        commit(event);
+    }
+
+    /*
+     Fills in what every stage event carries and commits it, if it is being recorded.
+     */
+    private void commit(StageEvent event) {
+        if (!event.shouldCommit()) {
+            return;
+        }
+        event.sourceName = sourceName;
+        event.inputSize = inputSize;
+        event.nodeCount = stats.getNodeCount();
+        event.errorCount = errors.size();
+        if (event instanceof GenerateEvent) {
+            ((GenerateEvent) event).outputSize = stats.getOutputSize();
+        }
+        event.commit();
+    }
+
+    //Counts the characters generated for the stats
+    private static class CountingAppendable implements Appendable {
+        private final Appendable out;
+        private long count = 0;
+
+        private CountingAppendable(Appendable out) {
+            this.out = out;
+        }
+
+        @Override
+        public Appendable append(CharSequence csq) throws IOException {
+            CharSequence text = csq == null ? "null" : csq;
+            count += text.length();
+            out.append(text);
+            return this;
+        }
+
+        @Override
+        public Appendable append(CharSequence csq, int start, int end) throws IOException {
+            CharSequence text = csq == null ? "null" : csq;
+            count += end - start;
+            out.append(text, start, end);
+            return this;
+        }
+
+        @Override
+        public Appendable append(char c) throws IOException {
+            count++;
+            out.append(c);
+            return this;
+        }
+    }
+
+    /*
+     Parses the input straight into a CompactAST, without building a parse tree or node objects.
+     Returns null when the input has syntax errors, they are in getErrors. The pipeline's own AST
+     is left alone, use compile(CompactAST, Appendable) to get CSS out of the result.
+     */
+    public CompactAST parseCompact(String input) {
+        TokenSource lexer = createLexer(CharStreams.fromString(input));
+        errors.clear();
+        try {
+            ICSSParser parser = new ICSSParser(new CancellableTokenStream(lexer));
+            parser.setBuildParseTree(false);
+            CompactASTListener listener = new CompactASTListener();
+            parser.addParseListener(listener);
+            parseCount++;
+
+            if (twoStageParsing) {
+                parseTwoStage(parser);
+            } else {
+                parseFullContext(parser);
+            }
+            return errors.isEmpty() ? listener.getCompactAST() : null;
+
+        } catch (RecognitionException e) {
+            errors.add(e.getMessage());
+        } catch (ParseCancellationException e) {
+            errors.add("Syntax error");
+        }
+        return null;
+    }
+
+    /*
+     Checks, transforms and generates a compact tree one top-level statement at a time, so only one
+     statement exists as node objects at any moment. Each statement is compiled in a stylesheet that
+     also holds the latest assignment of every global variable before it.
+     Stops at the first statement with errors and returns false, the output is incomplete then.
+     */
+    public boolean compile(CompactAST compact, Appendable out) throws IOException {
+        errors.clear();
+        Generator generator = new Generator();
+        LinkedHashMap<String, ASTNode> globals = new LinkedHashMap<>();
+
+        for (ASTNode statement : compact.statements()) {
+            Cancellation.checkInterrupted();
+            Stylesheet window = new Stylesheet(new ArrayList<>(globals.values()));
+            window.body.add(statement);
+            AST windowAST = new AST(window);
+
+            (new Checker()).check(windowAST);
+            for (SemanticError e : windowAST.getErrors()) {
+                errors.add(e.toString());
+            }
+            if (!errors.isEmpty()) {
+                return false;
+            }
+            (new FusedTransform(new EvalExpressions(), new RemoveIf())).apply(windowAST);
+            generator.generate(windowAST, out);
+
+            if (statement instanceof VariableAssignment) {
+                String name = ((VariableAssignment) statement).name.name;
+                globals.remove(name);
+                globals.put(name, statement);
+            }
+        }
+        return true;
+    }
+
+    /*
+     Saves the AST, with the errors of the last check, so a later run can load it instead of parsing.
+     */
+    public void save(Path path) throws IOException {
+        ASTFile.write(ast, path);
+    }
+
+    /*
+     Loads an AST saved with save. It counts as parsed, run check to get its errors.
+     In the stats loading counts as building the AST.
+     */
+    public void load(Path path) throws IOException {
+        incrementalParser.invalidate();
+        errors.clear();
+        stats = new CompilationStats();
+        sourceName = path.toString();
+        inputSize = Files.size(path);
+        BuildASTEvent event = new BuildASTEvent();
+        event.begin();
+        stats.start();
+        ast = ASTFile.read(path);
+        stats.stop(CompilationStats.Stage.BUILD_AST);
+        event.end();
+        stats.measure(ast);
+        commit(event);
+        parsed = true;
+        checked = transformed = false;
+        errorsInAST = true;
+        cachedAST = false;
     }
 
     public void clearErrors(){
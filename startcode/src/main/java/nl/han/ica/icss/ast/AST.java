@@ -10,6 +10,9 @@ public class AST {
 	//The root of the tree
 	public Stylesheet root;
 
+	//Number of variable slots a frame needs for this tree, -1 if the variables haven't been resolved
+	public int slotCount = -1;
+
 	public AST() {
 		root = new Stylesheet();
 	}
@@ -18,6 +21,7 @@ public class AST {
 	}
 	public void setRoot(Stylesheet stylesheet) {
 		root = stylesheet;
+		slotCount = -1;
 	}
     public ArrayList<SemanticError> getErrors() {
 	    ArrayList<SemanticError> errors = new ArrayList<>();
@@ -28,8 +32,17 @@ public class AST {
 	    if(node.hasError()) {
 	        errors.add(node.getError());
         }
-        for(ASTNode child: node.getChildren()) {
-	        collectErrors(errors,child);
+        for(int i = 0; i < node.getChildCount(); i++) {
+	        collectErrors(errors,node.getChild(i));
+        }
+    }
+    public void clearErrors() {
+	    clearErrors(root);
+    }
+    private void clearErrors(ASTNode node) {
+	    node.clearError();
+        for(int i = 0; i < node.getChildCount(); i++) {
+	        clearErrors(node.getChild(i));
         }
     }
 	@Override
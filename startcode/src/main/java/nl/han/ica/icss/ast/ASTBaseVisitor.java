@@ -0,0 +1,122 @@
+package nl.han.ica.icss.ast;
+
+import nl.han.ica.icss.ast.literals.*;
+import nl.han.ica.icss.ast.operations.AddOperation;
+import nl.han.ica.icss.ast.operations.MultiplyOperation;
+import nl.han.ica.icss.ast.operations.SubtractOperation;
+import nl.han.ica.icss.ast.selectors.ClassSelector;
+import nl.han.ica.icss.ast.selectors.IdSelector;
+import nl.han.ica.icss.ast.selectors.TagSelector;
+
+/**
+ * An {@link ASTVisitor} that visits the children of every node and returns {@link #defaultResult()}.
+ * Extend it and override only the visit methods a pass is interested in.
+ *
+ * @param <T> the result type of the visit methods
+ */
+public class ASTBaseVisitor<T> implements ASTVisitor<T> {
+
+    /**
+     * Visits all children of the node, in the order of {@link ASTNode#getChild(int)}.
+     */
+    public T visitChildren(ASTNode node) {
+        for (int i = 0; i < node.getChildCount(); i++) {
+            node.getChild(i).accept(this);
+        }
+        return defaultResult();
+    }
+
+    protected T defaultResult() {
+        return null;
+    }
+
+    @Override
+    public T visitStylesheet(Stylesheet node) {
+        return visitChildren(node);
+    }
+
+    @Override
+    public T visitStylerule(Stylerule node) {
+        return visitChildren(node);
+    }
+
+    @Override
+    public T visitDeclaration(Declaration node) {
+        return visitChildren(node);
+    }
+
+    @Override
+    public T visitPropertyName(PropertyName node) {
+        return visitChildren(node);
+    }
+
+    @Override
+    public T visitVariableAssignment(VariableAssignment node) {
+        return visitChildren(node);
+    }
+
+    @Override
+    public T visitVariableReference(VariableReference node) {
+        return visitChildren(node);
+    }
+
+    @Override
+    public T visitIfClause(IfClause node) {
+        return visitChildren(node);
+    }
+
+    @Override
+    public T visitAddOperation(AddOperation node) {
+        return visitChildren(node);
+    }
+
+    @Override
+    public T visitSubtractOperation(SubtractOperation node) {
+        return visitChildren(node);
+    }
+
+    @Override
+    public T visitMultiplyOperation(MultiplyOperation node) {
+        return visitChildren(node);
+    }
+
+    @Override
+    public T visitBoolLiteral(BoolLiteral node) {
+        return visitChildren(node);
+    }
+
+    @Override
+    public T visitColorLiteral(ColorLiteral node) {
+        return visitChildren(node);
+    }
+
+    @Override
+    public T visitPercentageLiteral(PercentageLiteral node) {
+        return visitChildren(node);
+    }
+
+    @Override
+    public T visitPixelLiteral(PixelLiteral node) {
+        return visitChildren(node);
+    }
+
+    @Override
+    public T visitScalarLiteral(ScalarLiteral node) {
+        return visitChildren(node);
+    }
+
+    @Override
+    public T visitClassSelector(ClassSelector node) {
+        return visitChildren(node);
+    }
+
+    @Override
+    public T visitIdSelector(IdSelector node) {
+        return visitChildren(node);
+    }
+
+    @Override
+    public T visitTagSelector(TagSelector node) {
+        return visitChildren(node);
+    }
+}
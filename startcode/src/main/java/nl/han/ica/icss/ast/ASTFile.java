@@ -0,0 +1,484 @@
+package nl.han.ica.icss.ast;
+
+import nl.han.ica.icss.ast.literals.*;
+import nl.han.ica.icss.ast.operations.AddOperation;
+import nl.han.ica.icss.ast.operations.MultiplyOperation;
+import nl.han.ica.icss.ast.operations.SubtractOperation;
+import nl.han.ica.icss.ast.selectors.ClassSelector;
+import nl.han.ica.icss.ast.selectors.IdSelector;
+import nl.han.ica.icss.ast.selectors.TagSelector;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * Saves an AST to a binary file and loads it back without parsing, e.g. to skip parsing unchanged
+ * stylesheets in a later build. Errors of a checked AST and the variable slots are kept.
+ *
+ * Layout, numbers are big-endian, "varint" is an unsigned LEB128 number:
+ * <pre>
+ * header       int magic "ICSB", short version, short flags (0), int slot count (-1 if unresolved)
+ * strings      int count, per string: varint length, UTF-8 bytes
+ * literals     int count, per literal value: int
+ * errors       int count, per error: varint node index (in pre-order), varint string index
+ * nodes        int count, per node in pre-order: byte kind (see CompactAST), varint child count,
+ *              then for names and selectors a varint string index, for literals a varint literal
+ *              index, and for variable references also a varint slot + 1
+ * </pre>
+ *
+ * Reading checks every count against the bytes left before allocating and refuses ASTs nested
+ * deeper than {@link #MAX_DEPTH}, so a corrupt or truncated file gives an IOException.
+ */
+public final class ASTFile {
+
+    public static final int MAGIC = 0x49435342;
+    public static final short VERSION = 1;
+    //Far deeper than any stylesheet, but shallow enough to read on a small thread stack
+    public static final int MAX_DEPTH = 1024;
+
+    private ASTFile() {
+    }
+
+    public static void write(final AST ast, final Path path) throws IOException {
+        final Encoder encoder = new Encoder();
+        try {
+            ast.root.accept(encoder);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        final ByteBuffer header = ByteBuffer.allocate(12);
+        header.putInt(MAGIC).putShort(VERSION).putShort((short) 0).putInt(ast.slotCount).flip();
+
+        final Output strings = new Output();
+        strings.putInt(encoder.strings.size());
+        for (final String string : encoder.strings) {
+            final byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+            strings.putVarint(bytes.length);
+            strings.put(bytes);
+        }
+
+        final Output literals = new Output();
+        literals.putInt(encoder.literals.size());
+        for (final int literal : encoder.literals) {
+            literals.putInt(literal);
+        }
+
+        final Output errorCount = new Output();
+        errorCount.putInt(encoder.errorCount);
+        final Output nodeCount = new Output();
+        nodeCount.putInt(encoder.nodeCount);
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            final ByteBuffer[] buffers = {header, strings.toBuffer(), literals.toBuffer(), errorCount.toBuffer(),
+                    encoder.errors.toBuffer(), nodeCount.toBuffer(), encoder.nodes.toBuffer()};
+            long remaining = Arrays.stream(buffers).mapToLong(ByteBuffer::remaining).sum();
+            while (remaining > 0) {
+                remaining -= channel.write(buffers);
+            }
+        }
+    }
+
+    public static AST read(final Path path) throws IOException {
+        final MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        try {
+            return new Decoder(buffer).decode();
+        } catch (RuntimeException e) {
+            throw new IOException("Corrupt AST file " + path, e);
+        }
+    }
+
+    /**
+     * Growable big-endian byte output.
+     */
+    private static class Output {
+        private byte[] bytes = new byte[256];
+        private int size;
+
+        private void ensure(final int extra) {
+            if (size + extra > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + extra));
+            }
+        }
+
+        void put(final byte[] data) {
+            ensure(data.length);
+            System.arraycopy(data, 0, bytes, size, data.length);
+            size += data.length;
+        }
+
+        void putByte(final int value) {
+            ensure(1);
+            bytes[size++] = (byte) value;
+        }
+
+        void putInt(final int value) {
+            ensure(4);
+            bytes[size++] = (byte) (value >>> 24);
+            bytes[size++] = (byte) (value >>> 16);
+            bytes[size++] = (byte) (value >>> 8);
+            bytes[size++] = (byte) value;
+        }
+
+        void putVarint(int value) {
+            while ((value & ~0x7f) != 0) {
+                putByte((value & 0x7f) | 0x80);
+                value >>>= 7;
+            }
+            putByte(value);
+        }
+
+        ByteBuffer toBuffer() {
+            return ByteBuffer.wrap(bytes, 0, size);
+        }
+    }
+
+    /**
+     * Writes the node stream in pre-order and collects the strings, literals and errors on the way.
+     */
+    private static class Encoder extends ASTBaseVisitor<Void> {
+
+        private final Output nodes = new Output();
+        private final Output errors = new Output();
+        private int nodeCount;
+        private int errorCount;
+        //Of the node whose children are written
+        private int depth;
+
+        private final ArrayList<String> strings = new ArrayList<>();
+        private final HashMap<String, Integer> stringIndex = new HashMap<>();
+        private final ArrayList<Integer> literals = new ArrayList<>();
+        private final HashMap<Integer, Integer> literalIndex = new HashMap<>();
+
+        private int string(final String text) {
+            return stringIndex.computeIfAbsent(text, key -> {
+                strings.add(key);
+                return strings.size() - 1;
+            });
+        }
+
+        private int literal(final int value) {
+            return literalIndex.computeIfAbsent(value, key -> {
+                literals.add(key);
+                return literals.size() - 1;
+            });
+        }
+
+        /**
+         * Writes the node header, the caller writes the operands, then the children follow.
+         */
+        private void begin(final ASTNode node, final byte kind) {
+            if (node.hasError()) {
+                errorCount++;
+                errors.putVarint(nodeCount);
+                errors.putVarint(string(node.getError().description));
+            }
+            nodeCount++;
+            nodes.putByte(kind);
+            nodes.putVarint(node.getChildCount());
+        }
+
+        private Void children(final ASTNode node) {
+            if (++depth > MAX_DEPTH) {
+                throw new UncheckedIOException(new IOException("AST nests nodes deeper than " + MAX_DEPTH));
+            }
+            for (int i = 0; i < node.getChildCount(); i++) {
+                node.getChild(i).accept(this);
+            }
+            depth--;
+            return null;
+        }
+
+        private Void named(final ASTNode node, final byte kind, final String name) {
+            begin(node, kind);
+            nodes.putVarint(string(name));
+            return children(node);
+        }
+
+        private Void literal(final ASTNode node, final byte kind, final int value) {
+            begin(node, kind);
+            nodes.putVarint(literal(value));
+            return null;
+        }
+
+        @Override
+        public Void visitStylesheet(final Stylesheet node) {
+            begin(node, CompactAST.STYLESHEET);
+            return children(node);
+        }
+
+        @Override
+        public Void visitStylerule(final Stylerule node) {
+            begin(node, CompactAST.STYLERULE);
+            return children(node);
+        }
+
+        @Override
+        public Void visitDeclaration(final Declaration node) {
+            begin(node, CompactAST.DECLARATION);
+            return children(node);
+        }
+
+        @Override
+        public Void visitPropertyName(final PropertyName node) {
+            return named(node, CompactAST.PROPERTY_NAME, node.name);
+        }
+
+        @Override
+        public Void visitVariableAssignment(final VariableAssignment node) {
+            begin(node, CompactAST.VARIABLE_ASSIGNMENT);
+            return children(node);
+        }
+
+        @Override
+        public Void visitVariableReference(final VariableReference node) {
+            begin(node, CompactAST.VARIABLE_REFERENCE);
+            nodes.putVarint(string(node.name));
+            nodes.putVarint(node.slot + 1);
+            return null;
+        }
+
+        @Override
+        public Void visitIfClause(final IfClause node) {
+            begin(node, CompactAST.IF_CLAUSE);
+            return children(node);
+        }
+
+        @Override
+        public Void visitAddOperation(final AddOperation node) {
+            begin(node, CompactAST.ADD_OPERATION);
+            return children(node);
+        }
+
+        @Override
+        public Void visitSubtractOperation(final SubtractOperation node) {
+            begin(node, CompactAST.SUBTRACT_OPERATION);
+            return children(node);
+        }
+
+        @Override
+        public Void visitMultiplyOperation(final MultiplyOperation node) {
+            begin(node, CompactAST.MULTIPLY_OPERATION);
+            return children(node);
+        }
+
+        @Override
+        public Void visitBoolLiteral(final BoolLiteral node) {
+            return literal(node, CompactAST.BOOL_LITERAL, node.value ? 1 : 0);
+        }
+
+        @Override
+        public Void visitColorLiteral(final ColorLiteral node) {
+            return literal(node, CompactAST.COLOR_LITERAL, node.value);
+        }
+
+        @Override
+        public Void visitPercentageLiteral(final PercentageLiteral node) {
+            return literal(node, CompactAST.PERCENTAGE_LITERAL, node.value);
+        }
+
+        @Override
+        public Void visitPixelLiteral(final PixelLiteral node) {
+            return literal(node, CompactAST.PIXEL_LITERAL, node.value);
+        }
+
+        @Override
+        public Void visitScalarLiteral(final ScalarLiteral node) {
+            return literal(node, CompactAST.SCALAR_LITERAL, node.value);
+        }
+
+        @Override
+        public Void visitClassSelector(final ClassSelector node) {
+            return named(node, CompactAST.CLASS_SELECTOR, node.cls);
+        }
+
+        @Override
+        public Void visitIdSelector(final IdSelector node) {
+            return named(node, CompactAST.ID_SELECTOR, node.id);
+        }
+
+        @Override
+        public Void visitTagSelector(final TagSelector node) {
+            return named(node, CompactAST.TAG_SELECTOR, node.tag);
+        }
+    }
+
+    private static class Decoder {
+
+        private final ByteBuffer buffer;
+        private String[] strings;
+        private int[] literals;
+
+        //Node index and message of the errors, in node order
+        private int[] errorNodes;
+        private String[] errorMessages;
+        private int nextError;
+        private int nodeIndex;
+
+        private Decoder(final ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        private AST decode() throws IOException {
+            if (buffer.getInt() != MAGIC) {
+                throw new IOException("Not an AST file");
+            }
+            final short version = buffer.getShort();
+            if (version != VERSION) {
+                throw new IOException("Unsupported AST file version " + version + ", expected " + VERSION);
+            }
+            buffer.getShort();
+            final int slotCount = buffer.getInt();
+
+            strings = new String[count(buffer.getInt(), 1)];
+            for (int i = 0; i < strings.length; i++) {
+                final byte[] bytes = new byte[count(getVarint(), 1)];
+                buffer.get(bytes);
+                strings[i] = new String(bytes, StandardCharsets.UTF_8);
+            }
+            literals = new int[count(buffer.getInt(), Integer.BYTES)];
+            for (int i = 0; i < literals.length; i++) {
+                literals[i] = buffer.getInt();
+            }
+
+            errorNodes = new int[count(buffer.getInt(), 2)];
+            errorMessages = new String[errorNodes.length];
+            for (int i = 0; i < errorNodes.length; i++) {
+                errorNodes[i] = getVarint();
+                errorMessages[i] = strings[getVarint()];
+            }
+
+            final int nodeCount = count(buffer.getInt(), 2);
+            final ASTNode root = readNode(0);
+            if (nodeIndex != nodeCount) {
+                throw new IOException("AST file holds " + nodeIndex + " nodes instead of " + nodeCount);
+            }
+            if (nextError != errorNodes.length) {
+                throw new IOException("AST file has an error for node " + errorNodes[nextError] + " out of node order");
+            }
+            if (!(root instanceof Stylesheet)) {
+                throw new IOException("AST file does not hold a stylesheet");
+            }
+            final AST ast = new AST((Stylesheet) root);
+            ast.slotCount = slotCount;
+            return ast;
+        }
+
+        /**
+         * Checks a count of entries of at least the given size against the bytes left.
+         */
+        private int count(final int count, final int minBytes) throws IOException {
+            if (count < 0 || (long) count * minBytes > buffer.remaining()) {
+                throw new IOException("AST file has a count of " + count + " with only "
+                        + buffer.remaining() + " bytes left");
+            }
+            return count;
+        }
+
+        private int getVarint() throws IOException {
+            int value = 0;
+            int shift = 0;
+            byte b;
+            do {
+                if (shift > 28) {
+                    throw new IOException("AST file has a varint longer than an int");
+                }
+                b = buffer.get();
+                value |= (b & 0x7f) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+            return value;
+        }
+
+        private ASTNode readNode(final int depth) throws IOException {
+            if (depth > MAX_DEPTH) {
+                throw new IOException("AST file nests nodes deeper than " + MAX_DEPTH);
+            }
+            final int index = nodeIndex++;
+            final byte kind = buffer.get();
+            final int children = count(getVarint(), 2);
+
+            final ASTNode node;
+            switch (kind) {
+                case CompactAST.STYLESHEET:
+                    node = new Stylesheet();
+                    break;
+                case CompactAST.STYLERULE:
+                    node = new Stylerule();
+                    break;
+                case CompactAST.DECLARATION:
+                    node = new Declaration();
+                    break;
+                case CompactAST.PROPERTY_NAME:
+                    node = new PropertyName(strings[getVarint()]);
+                    break;
+                case CompactAST.VARIABLE_ASSIGNMENT:
+                    node = new VariableAssignment();
+                    break;
+                case CompactAST.VARIABLE_REFERENCE:
+                    final VariableReference reference = new VariableReference(strings[getVarint()]);
+                    reference.slot = getVarint() - 1;
+                    node = reference;
+                    break;
+                case CompactAST.IF_CLAUSE:
+                    node = new IfClause();
+                    break;
+                case CompactAST.ADD_OPERATION:
+                    node = new AddOperation();
+                    break;
+                case CompactAST.SUBTRACT_OPERATION:
+                    node = new SubtractOperation();
+                    break;
+                case CompactAST.MULTIPLY_OPERATION:
+                    node = new MultiplyOperation();
+                    break;
+                case CompactAST.BOOL_LITERAL:
+                    node = BoolLiteral.valueOf(literals[getVarint()] != 0);
+                    break;
+                case CompactAST.COLOR_LITERAL:
+                    node = ColorLiteral.valueOf(literals[getVarint()]);
+                    break;
+                case CompactAST.PERCENTAGE_LITERAL:
+                    node = PercentageLiteral.valueOf(literals[getVarint()]);
+                    break;
+                case CompactAST.PIXEL_LITERAL:
+                    node = PixelLiteral.valueOf(literals[getVarint()]);
+                    break;
+                case CompactAST.SCALAR_LITERAL:
+                    node = ScalarLiteral.valueOf(literals[getVarint()]);
+                    break;
+                case CompactAST.CLASS_SELECTOR:
+                    node = new ClassSelector(strings[getVarint()]);
+                    break;
+                case CompactAST.ID_SELECTOR:
+                    node = new IdSelector(strings[getVarint()]);
+                    break;
+                case CompactAST.TAG_SELECTOR:
+                    node = new TagSelector(strings[getVarint()]);
+                    break;
+                default:
+                    throw new IOException("Unknown node kind " + kind);
+            }
+            if (nextError < errorNodes.length && errorNodes[nextError] == index) {
+                node.setError(errorMessages[nextError++]);
+            }
+            for (int i = 0; i < children; i++) {
+                node.addChild(readNode(depth + 1));
+            }
+            return node;
+        }
+    }
+}
@@ -3,9 +3,8 @@ package nl.han.ica.icss.ast;
 import nl.han.ica.icss.checker.SemanticError;
 
 import java.util.ArrayList;
-import java.util.List;
 
-public class ASTNode {
+public abstract class ASTNode {
 
     private SemanticError error = null;
 
@@ -17,12 +16,33 @@ public class ASTNode {
         return "ASTNode";
     }
 
+    /*
+     Calls the visit method of the visitor that belongs to the concrete class of this node.
+     Every concrete node class implements this.
+     */
+    public abstract <T> T accept(ASTVisitor<T> visitor);
+
     /*
      Different AST nodes use different attributes to store their children.
      This method provides a unified interface.
+     It builds a new list on every call, tree walks should use getChildCount() and getChild(int).
      */
     public ArrayList<ASTNode> getChildren() {
-        return new ArrayList<>();
+        int count = getChildCount();
+        ArrayList<ASTNode> children = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            children.add(getChild(i));
+        }
+        return children;
+    }
+    /*
+     Indexed access to the children, in the same order as getChildren(), without allocating.
+     */
+    public int getChildCount() {
+        return 0;
+    }
+    public ASTNode getChild(int index) {
+        throw new IndexOutOfBoundsException(index);
     }
     /*
     By implementing this method in a subclass you can easily create AST nodes
@@ -50,6 +70,10 @@ public class ASTNode {
         return error != null;
     }
 
+    public void clearError() {
+        this.error = null;
+    }
+
 	@Override
 	public String toString() {
 		StringBuilder result = new StringBuilder();
@@ -60,9 +84,9 @@ public class ASTNode {
 		builder.append("[");
 		builder.append(getNodeLabel());	
 		builder.append("|");
-		for(ASTNode child : getChildren()) {
-			child.toString(builder);
-		}	
+		for(int i = 0; i < getChildCount(); i++) {
+			getChild(i).toString(builder);
+		}
 		builder.append("]");
 	}
 
@@ -71,12 +95,12 @@ public class ASTNode {
         if(! (o instanceof ASTNode))
             return false;
         //Compare all children
-        List<ASTNode> thisChildren = this.getChildren();
-        List<ASTNode> otherChildren = ((ASTNode) o).getChildren();
-        if(otherChildren.size() != thisChildren.size())
+        ASTNode other = (ASTNode) o;
+        int count = this.getChildCount();
+        if(other.getChildCount() != count)
             return false;
-        for(int i = 0; i < thisChildren.size(); i++ ) {
-            if(!thisChildren.get(i).equals(otherChildren.get(i))) {
+        for(int i = 0; i < count; i++ ) {
+            if(!this.getChild(i).equals(other.getChild(i))) {
                 return false;
             }
         }
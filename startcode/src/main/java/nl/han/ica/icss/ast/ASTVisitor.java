@@ -0,0 +1,55 @@
+package nl.han.ica.icss.ast;
+
+import nl.han.ica.icss.ast.literals.*;
+import nl.han.ica.icss.ast.operations.AddOperation;
+import nl.han.ica.icss.ast.operations.MultiplyOperation;
+import nl.han.ica.icss.ast.operations.SubtractOperation;
+import nl.han.ica.icss.ast.selectors.ClassSelector;
+import nl.han.ica.icss.ast.selectors.IdSelector;
+import nl.han.ica.icss.ast.selectors.TagSelector;
+
+/**
+ * A visitor over the concrete AST node classes.
+ * Every node's accept method calls the visit method of its own class (double dispatch),
+ * so a pass knows the kind of node it is looking at without any instanceof tests.
+ *
+ * @param <T> the result type of the visit methods, use Void when there is none
+ */
+public interface ASTVisitor<T> {
+
+    T visitStylesheet(Stylesheet node);
+
+    T visitStylerule(Stylerule node);
+
+    T visitDeclaration(Declaration node);
+
+    T visitPropertyName(PropertyName node);
+
+    T visitVariableAssignment(VariableAssignment node);
+
+    T visitVariableReference(VariableReference node);
+
+    T visitIfClause(IfClause node);
+
+    T visitAddOperation(AddOperation node);
+
+    T visitSubtractOperation(SubtractOperation node);
+
+    T visitMultiplyOperation(MultiplyOperation node);
+
+    T visitBoolLiteral(BoolLiteral node);
+
+    T visitColorLiteral(ColorLiteral node);
+
+    T visitPercentageLiteral(PercentageLiteral node);
+
+    T visitPixelLiteral(PixelLiteral node);
+
+    T visitScalarLiteral(ScalarLiteral node);
+
+    T visitClassSelector(ClassSelector node);
+
+    T visitIdSelector(IdSelector node);
+
+    T visitTagSelector(TagSelector node);
+}
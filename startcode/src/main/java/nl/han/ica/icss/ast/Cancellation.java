@@ -0,0 +1,32 @@
+package nl.han.ica.icss.ast;
+
+import java.util.concurrent.CancellationException;
+
+/**
+ * Lets the stages of the pipeline stop early when the thread running them is interrupted, e.g. by
+ * {@link java.util.concurrent.Future#cancel(boolean)}. The stages call it between statements, so a
+ * cancelled compile of a big stylesheet frees its thread instead of running to the end.
+ */
+public final class Cancellation {
+
+    private Cancellation() {
+    }
+
+    /**
+     * @throws CancellationException when the current thread is interrupted, its interrupt status is kept
+     */
+    public static void checkInterrupted() {
+        checkInterrupted(Thread.currentThread());
+    }
+
+    /**
+     * For work that runs on other threads on behalf of the given one.
+     *
+     * @throws CancellationException when the thread is interrupted
+     */
+    public static void checkInterrupted(final Thread thread) {
+        if (thread.isInterrupted()) {
+            throw new CancellationException("Interrupted");
+        }
+    }
+}
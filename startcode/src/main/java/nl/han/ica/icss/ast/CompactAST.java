@@ -0,0 +1,414 @@
+package nl.han.ica.icss.ast;
+
+import nl.han.ica.icss.ast.literals.*;
+import nl.han.ica.icss.ast.operations.AddOperation;
+import nl.han.ica.icss.ast.operations.MultiplyOperation;
+import nl.han.ica.icss.ast.operations.SubtractOperation;
+import nl.han.ica.icss.ast.selectors.ClassSelector;
+import nl.han.ica.icss.ast.selectors.IdSelector;
+import nl.han.ica.icss.ast.selectors.TagSelector;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * An AST stored as a handful of parallel arrays instead of one object per node, for stylesheets
+ * too big to keep as an object tree.
+ *
+ * A node is an index into the arrays. It has a kind, a value, its first child and its next sibling.
+ * The value of a number is the number itself, of a bool 0 or 1, of a color its packed rgb value and
+ * of a name or selector the id of the text in a table of interned strings. Other nodes have no value.
+ *
+ * The tree can't be changed. To check, transform or generate it, materialize the statements
+ * one at a time with {@link #statements()}, or the whole tree with {@link #toAST()}.
+ */
+public class CompactAST {
+
+    public static final int NONE = -1;
+
+    public static final byte STYLESHEET = 0;
+    public static final byte STYLERULE = 1;
+    public static final byte DECLARATION = 2;
+    public static final byte PROPERTY_NAME = 3;
+    public static final byte VARIABLE_ASSIGNMENT = 4;
+    public static final byte VARIABLE_REFERENCE = 5;
+    public static final byte IF_CLAUSE = 6;
+    public static final byte ADD_OPERATION = 7;
+    public static final byte SUBTRACT_OPERATION = 8;
+    public static final byte MULTIPLY_OPERATION = 9;
+    public static final byte BOOL_LITERAL = 10;
+    public static final byte COLOR_LITERAL = 11;
+    public static final byte PERCENTAGE_LITERAL = 12;
+    public static final byte PIXEL_LITERAL = 13;
+    public static final byte SCALAR_LITERAL = 14;
+    public static final byte CLASS_SELECTOR = 15;
+    public static final byte ID_SELECTOR = 16;
+    public static final byte TAG_SELECTOR = 17;
+
+    private final byte[] kinds;
+    private final int[] values;
+    private final int[] firstChild;
+    private final int[] nextSibling;
+    private final String[] strings;
+    private final int root;
+
+    private CompactAST(final byte[] kinds, final int[] values, final int[] firstChild, final int[] nextSibling,
+                       final String[] strings, final int root) {
+        this.kinds = kinds;
+        this.values = values;
+        this.firstChild = firstChild;
+        this.nextSibling = nextSibling;
+        this.strings = strings;
+        this.root = root;
+    }
+
+    public int getRoot() {
+        return root;
+    }
+
+    public int getNodeCount() {
+        return kinds.length;
+    }
+
+    public byte getKind(final int node) {
+        return kinds[node];
+    }
+
+    public int getValue(final int node) {
+        return values[node];
+    }
+
+    /**
+     * The text of a name or selector node.
+     */
+    public String getString(final int node) {
+        return strings[values[node]];
+    }
+
+    public int getFirstChild(final int node) {
+        return firstChild[node];
+    }
+
+    public int getNextSibling(final int node) {
+        return nextSibling[node];
+    }
+
+    /**
+     * The memory taken by the arrays and the string table, object headers not counted.
+     */
+    public long getByteSize() {
+        long bytes = kinds.length * (1L + 3 * Integer.BYTES) + strings.length * 4L;
+        for (final String string : strings) {
+            bytes += string.length();
+        }
+        return bytes;
+    }
+
+    /**
+     * Builds the object tree of the whole stylesheet.
+     */
+    public AST toAST() {
+        return new AST((Stylesheet) toNode(root));
+    }
+
+    /**
+     * The top-level statements as object trees, each one built when the iterator gets to it.
+     */
+    public Iterable<ASTNode> statements() {
+        return () -> new Iterator<>() {
+            private int next = firstChild[root];
+
+            @Override
+            public boolean hasNext() {
+                return next != NONE;
+            }
+
+            @Override
+            public ASTNode next() {
+                if (next == NONE) {
+                    throw new NoSuchElementException();
+                }
+                final ASTNode statement = toNode(next);
+                next = nextSibling[next];
+                return statement;
+            }
+        };
+    }
+
+    /**
+     * Builds the object tree of a node and everything below it.
+     */
+    public ASTNode toNode(final int node) {
+        final ASTNode result;
+        switch (kinds[node]) {
+            case STYLESHEET:
+                result = new Stylesheet();
+                break;
+            case STYLERULE:
+                result = new Stylerule();
+                break;
+            case DECLARATION:
+                result = new Declaration();
+                break;
+            case PROPERTY_NAME:
+                result = new PropertyName(getString(node));
+                break;
+            case VARIABLE_ASSIGNMENT:
+                result = new VariableAssignment();
+                break;
+            case VARIABLE_REFERENCE:
+                result = new VariableReference(getString(node));
+                break;
+            case IF_CLAUSE:
+                result = new IfClause();
+                break;
+            case ADD_OPERATION:
+                result = new AddOperation();
+                break;
+            case SUBTRACT_OPERATION:
+                result = new SubtractOperation();
+                break;
+            case MULTIPLY_OPERATION:
+                result = new MultiplyOperation();
+                break;
+            case BOOL_LITERAL:
+                result = BoolLiteral.valueOf(values[node] != 0);
+                break;
+            case COLOR_LITERAL:
+                result = ColorLiteral.valueOf(values[node]);
+                break;
+            case PERCENTAGE_LITERAL:
+                result = PercentageLiteral.valueOf(values[node]);
+                break;
+            case PIXEL_LITERAL:
+                result = PixelLiteral.valueOf(values[node]);
+                break;
+            case SCALAR_LITERAL:
+                result = ScalarLiteral.valueOf(values[node]);
+                break;
+            case CLASS_SELECTOR:
+                result = new ClassSelector(getString(node));
+                break;
+            case ID_SELECTOR:
+                result = new IdSelector(getString(node));
+                break;
+            case TAG_SELECTOR:
+                result = new TagSelector(getString(node));
+                break;
+            default:
+                throw new IllegalStateException("Unknown node kind " + kinds[node]);
+        }
+        for (int child = firstChild[node]; child != NONE; child = nextSibling[child]) {
+            result.addChild(toNode(child));
+        }
+        return result;
+    }
+
+    /**
+     * Compacts an object tree.
+     */
+    public static CompactAST fromAST(final AST ast) {
+        final Builder builder = new Builder();
+        ast.root.accept(new Compactor(builder));
+        return builder.build();
+    }
+
+    /**
+     * Builds a CompactAST bottom-up: the children of a node are added before the node itself.
+     * Finished nodes wait on a stack until their parent is added, {@link #mark()} tells where the
+     * children of the next parent start.
+     */
+    public static class Builder {
+
+        private byte[] kinds = new byte[1024];
+        private int[] values = new int[1024];
+        private int[] firstChild = new int[1024];
+        private int[] nextSibling = new int[1024];
+        private int size;
+
+        private int[] stack = new int[64];
+        private int height;
+
+        private final HashMap<String, Integer> stringIds = new HashMap<>();
+        private final ArrayList<String> strings = new ArrayList<>();
+
+        /**
+         * Forgets everything added so far.
+         */
+        public void reset() {
+            size = 0;
+            height = 0;
+            stringIds.clear();
+            strings.clear();
+        }
+
+        public int mark() {
+            return height;
+        }
+
+        /**
+         * The id of the text in the string table, equal texts get the same id.
+         */
+        public int string(final String text) {
+            final Integer id = stringIds.get(text);
+            if (id != null) {
+                return id;
+            }
+            stringIds.put(text, strings.size());
+            strings.add(text);
+            return strings.size() - 1;
+        }
+
+        /**
+         * Adds a node with the nodes pushed since the mark as its children, then pushes the node.
+         * @return the new node
+         */
+        public int add(final byte kind, final int value, final int mark) {
+            if (size == kinds.length) {
+                final int capacity = size * 2;
+                kinds = Arrays.copyOf(kinds, capacity);
+                values = Arrays.copyOf(values, capacity);
+                firstChild = Arrays.copyOf(firstChild, capacity);
+                nextSibling = Arrays.copyOf(nextSibling, capacity);
+            }
+            final int node = size++;
+            kinds[node] = kind;
+            values[node] = value;
+            nextSibling[node] = NONE;
+            firstChild[node] = height > mark ? stack[mark] : NONE;
+            for (int i = mark; i < height - 1; i++) {
+                nextSibling[stack[i]] = stack[i + 1];
+            }
+
+            height = mark;
+            if (height == stack.length) {
+                stack = Arrays.copyOf(stack, height * 2);
+            }
+            stack[height++] = node;
+            return node;
+        }
+
+        /**
+         * @return the tree whose root is the last node added
+         */
+        public CompactAST build() {
+            if (size == 0) {
+                throw new IllegalStateException("Nothing was added");
+            }
+            return new CompactAST(Arrays.copyOf(kinds, size), Arrays.copyOf(values, size),
+                    Arrays.copyOf(firstChild, size), Arrays.copyOf(nextSibling, size),
+                    strings.toArray(new String[0]), size - 1);
+        }
+    }
+
+    private static class Compactor extends ASTBaseVisitor<Void> {
+
+        private final Builder builder;
+
+        private Compactor(final Builder builder) {
+            this.builder = builder;
+        }
+
+        private Void add(final ASTNode node, final byte kind, final int value) {
+            final int mark = builder.mark();
+            for (int i = 0; i < node.getChildCount(); i++) {
+                node.getChild(i).accept(this);
+            }
+            builder.add(kind, value, mark);
+            return null;
+        }
+
+        @Override
+        public Void visitStylesheet(final Stylesheet node) {
+            return add(node, STYLESHEET, 0);
+        }
+
+        @Override
+        public Void visitStylerule(final Stylerule node) {
+            return add(node, STYLERULE, 0);
+        }
+
+        @Override
+        public Void visitDeclaration(final Declaration node) {
+            return add(node, DECLARATION, 0);
+        }
+
+        @Override
+        public Void visitPropertyName(final PropertyName node) {
+            return add(node, PROPERTY_NAME, builder.string(node.name));
+        }
+
+        @Override
+        public Void visitVariableAssignment(final VariableAssignment node) {
+            return add(node, VARIABLE_ASSIGNMENT, 0);
+        }
+
+        @Override
+        public Void visitVariableReference(final VariableReference node) {
+            return add(node, VARIABLE_REFERENCE, builder.string(node.name));
+        }
+
+        @Override
+        public Void visitIfClause(final IfClause node) {
+            return add(node, IF_CLAUSE, 0);
+        }
+
+        @Override
+        public Void visitAddOperation(final AddOperation node) {
+            return add(node, ADD_OPERATION, 0);
+        }
+
+        @Override
+        public Void visitSubtractOperation(final SubtractOperation node) {
+            return add(node, SUBTRACT_OPERATION, 0);
+        }
+
+        @Override
+        public Void visitMultiplyOperation(final MultiplyOperation node) {
+            return add(node, MULTIPLY_OPERATION, 0);
+        }
+
+        @Override
+        public Void visitBoolLiteral(final BoolLiteral node) {
+            return add(node, BOOL_LITERAL, node.value ? 1 : 0);
+        }
+
+        @Override
+        public Void visitColorLiteral(final ColorLiteral node) {
+            return add(node, COLOR_LITERAL, node.value);
+        }
+
+        @Override
+        public Void visitPercentageLiteral(final PercentageLiteral node) {
+            return add(node, PERCENTAGE_LITERAL, node.value);
+        }
+
+        @Override
+        public Void visitPixelLiteral(final PixelLiteral node) {
+            return add(node, PIXEL_LITERAL, node.value);
+        }
+
+        @Override
+        public Void visitScalarLiteral(final ScalarLiteral node) {
+            return add(node, SCALAR_LITERAL, node.value);
+        }
+
+        @Override
+        public Void visitClassSelector(final ClassSelector node) {
+            return add(node, CLASS_SELECTOR, builder.string(node.cls));
+        }
+
+        @Override
+        public Void visitIdSelector(final IdSelector node) {
+            return add(node, ID_SELECTOR, builder.string(node.id));
+        }
+
+        @Override
+        public Void visitTagSelector(final TagSelector node) {
+            return add(node, TAG_SELECTOR, builder.string(node.tag));
+        }
+    }
+}
@@ -21,13 +21,23 @@ public class IfClause extends ASTNode {
     public String getNodeLabel() {
         return "If_Clause";
     }
+
+    @Override
+    public <T> T accept(ASTVisitor<T> visitor) {
+        return visitor.visitIfClause(this);
+    }
     @Override
-    public ArrayList<ASTNode> getChildren() {
-        ArrayList<ASTNode> children = new ArrayList<>();
-        children.add(conditionalExpression);
-        children.addAll(body);
+    public int getChildCount() {
+        return (conditionalExpression != null ? 1 : 0) + body.size();
+    }
 
-        return children;
+    @Override
+    public ASTNode getChild(int index) {
+        if(conditionalExpression == null)
+            return body.get(index);
+        if(index == 0)
+            return conditionalExpression;
+        return body.get(index - 1);
     }
 
     @Override
@@ -1,4 +1,19 @@
 package nl.han.ica.icss.ast;
 
+/*
+ * Literals are immutable values. The valueOf factories of the literal classes hand out shared
+ * instances, so the same literal object can appear in many places of a tree (and of other trees).
+ * That is why a literal can't carry an error: it ignores setError, put the error on the enclosing
+ * node instead.
+ */
 public abstract class Literal extends Expression {
+
+    //Range of numbers the number literals keep a shared instance for, like Integer.valueOf
+    protected static final int CACHE_LOW = -128;
+    protected static final int CACHE_HIGH = 1024;
+
+    //An error here would show up at every place the literal is shared
+    @Override
+    public void setError(String description) {
+    }
 }
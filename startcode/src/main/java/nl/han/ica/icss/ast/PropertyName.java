@@ -19,6 +19,11 @@ public class PropertyName extends ASTNode {
         return "Property: (" + name + ")";
     }
 
+    @Override
+    public <T> T accept(ASTVisitor<T> visitor) {
+        return visitor.visitPropertyName(this);
+    }
+
     @Override
     public String toString() {
         return name;
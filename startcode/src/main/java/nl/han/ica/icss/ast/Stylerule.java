@@ -24,12 +24,20 @@ public class Stylerule extends ASTNode {
     }
 
     @Override
-    public ArrayList<ASTNode> getChildren() {
-        ArrayList<ASTNode> children = new ArrayList<>();
-        children.addAll(selectors);
-        children.addAll(body);
+    public <T> T accept(ASTVisitor<T> visitor) {
+        return visitor.visitStylerule(this);
+    }
 
-        return children;
+    @Override
+    public int getChildCount() {
+        return selectors.size() + body.size();
+    }
+
+    @Override
+    public ASTNode getChild(int index) {
+        if (index < selectors.size())
+            return selectors.get(index);
+        return body.get(index - selectors.size());
     }
 
     @Override
@@ -24,11 +24,26 @@ public class Stylesheet extends ASTNode {
         return "Stylesheet";
     }
 
+    @Override
+    public <T> T accept(ASTVisitor<T> visitor) {
+        return visitor.visitStylesheet(this);
+    }
+
     @Override
     public ArrayList<ASTNode> getChildren() {
         return this.body;
     }
 
+    @Override
+    public int getChildCount() {
+        return body.size();
+    }
+
+    @Override
+    public ASTNode getChild(int index) {
+        return body.get(index);
+    }
+
     @Override
     public ASTNode addChild(ASTNode child) {
         body.add(child);
@@ -59,7 +74,7 @@ public class Stylesheet extends ASTNode {
     @Override
     public String toString() {
         final StringBuilder builder = new StringBuilder();
-        for (final ASTNode node : getChildren()) {
+        for (final ASTNode node : body) {
             builder.append(node.toString());
         }
         return builder.toString();
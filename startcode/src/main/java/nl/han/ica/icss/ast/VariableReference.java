@@ -4,7 +4,11 @@ import java.util.Objects;
 
 public class VariableReference extends Expression {
 
+	//Slot of this variable in the frame, set by the VariableResolver
+	public static final int UNRESOLVED = -1;
+
 	public String name;
+	public int slot = UNRESOLVED;
 	
 	public VariableReference(String name) {
 		super();
@@ -16,6 +20,11 @@ public class VariableReference extends Expression {
 		return "VariableReference (" + name + ")";
 	}
 
+	@Override
+	public <T> T accept(ASTVisitor<T> visitor) {
+		return visitor.visitVariableReference(this);
+	}
+
 	@Override
 	public boolean equals(Object o) {
 		if (this == o) return true;
@@ -1,11 +1,14 @@
 package nl.han.ica.icss.ast.literals;
 
+import nl.han.ica.icss.ast.ASTVisitor;
 import nl.han.ica.icss.ast.Literal;
 
-import java.util.Objects;
-
 public class BoolLiteral extends Literal {
-    public boolean value;
+
+    public static final BoolLiteral TRUE = new BoolLiteral(true);
+    public static final BoolLiteral FALSE = new BoolLiteral(false);
+
+    public final boolean value;
 
     public BoolLiteral(boolean value) {
         this.value = value;
@@ -13,24 +16,34 @@ public class BoolLiteral extends Literal {
     public BoolLiteral(String text) {
         this.value = text.equals("TRUE");
     }
+
+    public static BoolLiteral valueOf(boolean value) {
+        return value ? TRUE : FALSE;
+    }
+    public static BoolLiteral valueOf(String text) {
+        return valueOf(text.equals("TRUE"));
+    }
     @Override
     public String getNodeLabel() {
         String textValue = value ? "TRUE" : "FALSE";
         return "Bool Literal (" + textValue + ")";
     }
 
+    @Override
+    public <T> T accept(ASTVisitor<T> visitor) {
+        return visitor.visitBoolLiteral(this);
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
-        if (!super.equals(o)) return false;
-        BoolLiteral that = (BoolLiteral) o;
-        return value == that.value;
+        return value == ((BoolLiteral) o).value;
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(value);
+        return Boolean.hashCode(value);
     }
 
     @Override
@@ -1,18 +1,58 @@
 package nl.han.ica.icss.ast.literals;
 
+import nl.han.ica.icss.ast.ASTVisitor;
 import nl.han.ica.icss.ast.Literal;
 
-import java.util.Objects;
-
 public class ColorLiteral extends Literal {
-    public String value;
 
-    public ColorLiteral(String value) {
-        this.value = value;
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    //Direct-mapped cache of recently used colors. Racing threads may replace each other's entries,
+    //which only costs an allocation: the literals are immutable.
+    private static final int CACHE_SIZE = 4096;
+    private static final ColorLiteral[] CACHE = new ColorLiteral[CACHE_SIZE];
+
+    //The color packed as 0xrrggbb
+    public final int value;
+
+    public ColorLiteral(int rgb) {
+        this.value = rgb & 0xffffff;
+    }
+    public ColorLiteral(String text) {
+        this(parse(text));
+    }
+
+    /**
+     * A shared instance, a color that was used recently comes from a cache
+     */
+    public static ColorLiteral valueOf(int rgb) {
+        final int value = rgb & 0xffffff;
+        final int index = (value ^ (value >>> 12)) & (CACHE_SIZE - 1);
+        final ColorLiteral cached = CACHE[index];
+        if (cached != null && cached.value == value) {
+            return cached;
+        }
+        final ColorLiteral literal = new ColorLiteral(value);
+        CACHE[index] = literal;
+        return literal;
+    }
+    public static ColorLiteral valueOf(String text) {
+        return valueOf(parse(text));
+    }
+    /**
+     * Parses a color written as #rrggbb
+     */
+    public static int parse(String text) {
+        return Integer.parseInt(text.substring(1), 16);
     }
     @Override
     public String getNodeLabel() {
-        return "Color literal (" + value + ")";
+        return "Color literal (" + this + ")";
+    }
+
+    @Override
+    public <T> T accept(ASTVisitor<T> visitor) {
+        return visitor.visitColorLiteral(this);
     }
 
 
@@ -20,18 +60,24 @@ public class ColorLiteral extends Literal {
     public boolean equals(Object o) {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
-        ColorLiteral that = (ColorLiteral) o;
-        return Objects.equals(value, that.value);
+        return value == ((ColorLiteral) o).value;
     }
 
     @Override
     public int hashCode() {
-
-        return Objects.hash(value);
+        return Integer.hashCode(value);
     }
 
+    /**
+     * The color as #rrggbb
+     */
     @Override
     public String toString() {
-        return value;
+        final char[] text = new char[7];
+        text[0] = '#';
+        for (int i = 6; i > 0; i--) {
+            text[i] = HEX_DIGITS[(value >> (4 * (6 - i))) & 0xf];
+        }
+        return new String(text);
     }
 }
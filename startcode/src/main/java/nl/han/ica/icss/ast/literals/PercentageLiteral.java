@@ -1,35 +1,62 @@
 package nl.han.ica.icss.ast.literals;
 
+import nl.han.ica.icss.ast.ASTVisitor;
 import nl.han.ica.icss.ast.Literal;
 
-import java.util.Objects;
-
 public class PercentageLiteral extends Literal {
-    public int value;
+
+    private static final PercentageLiteral[] CACHE = new PercentageLiteral[CACHE_HIGH - CACHE_LOW + 1];
+
+    static {
+        for (int i = 0; i < CACHE.length; i++) {
+            CACHE[i] = new PercentageLiteral(CACHE_LOW + i);
+        }
+    }
+
+    public final int value;
 
     public PercentageLiteral(int value) {
         this.value = value;
     }
     public PercentageLiteral(String text) {
-        this.value = Integer.parseInt(text.substring(0, text.length() - 1));
+        this(parse(text));
+    }
+
+    /**
+     * A shared instance, small values come from a cache
+     */
+    public static PercentageLiteral valueOf(int value) {
+        if (value >= CACHE_LOW && value <= CACHE_HIGH) {
+            return CACHE[value - CACHE_LOW];
+        }
+        return new PercentageLiteral(value);
+    }
+    public static PercentageLiteral valueOf(String text) {
+        return valueOf(parse(text));
+    }
+    private static int parse(String text) {
+        return Integer.parseInt(text.substring(0, text.length() - 1));
     }
     @Override
     public String getNodeLabel() {
         return "Percentage literal (" + value + ")";
     }
 
+    @Override
+    public <T> T accept(ASTVisitor<T> visitor) {
+        return visitor.visitPercentageLiteral(this);
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
-        if (!super.equals(o)) return false;
-        PercentageLiteral that = (PercentageLiteral) o;
-        return value == that.value;
+        return value == ((PercentageLiteral) o).value;
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(value);
+        return Integer.hashCode(value);
     }
 
     @Override
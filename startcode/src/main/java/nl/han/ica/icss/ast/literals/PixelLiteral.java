@@ -1,35 +1,62 @@
 package nl.han.ica.icss.ast.literals;
 
+import nl.han.ica.icss.ast.ASTVisitor;
 import nl.han.ica.icss.ast.Literal;
 
-import java.util.Objects;
-
 public class PixelLiteral extends Literal {
-    public int value;
+
+    private static final PixelLiteral[] CACHE = new PixelLiteral[CACHE_HIGH - CACHE_LOW + 1];
+
+    static {
+        for (int i = 0; i < CACHE.length; i++) {
+            CACHE[i] = new PixelLiteral(CACHE_LOW + i);
+        }
+    }
+
+    public final int value;
 
     public PixelLiteral(int value) {
         this.value = value;
     }
     public PixelLiteral(String text) {
-        this.value = Integer.parseInt(text.substring(0, text.length() - 2));
+        this(parse(text));
+    }
+
+    /**
+     * A shared instance, small values come from a cache
+     */
+    public static PixelLiteral valueOf(int value) {
+        if (value >= CACHE_LOW && value <= CACHE_HIGH) {
+            return CACHE[value - CACHE_LOW];
+        }
+        return new PixelLiteral(value);
+    }
+    public static PixelLiteral valueOf(String text) {
+        return valueOf(parse(text));
+    }
+    private static int parse(String text) {
+        return Integer.parseInt(text.substring(0, text.length() - 2));
     }
     @Override
     public String getNodeLabel() {
         return "Pixel literal (" + value + ")";
     }
 
+    @Override
+    public <T> T accept(ASTVisitor<T> visitor) {
+        return visitor.visitPixelLiteral(this);
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
-        if (!super.equals(o)) return false;
-        PixelLiteral that = (PixelLiteral) o;
-        return value == that.value;
+        return value == ((PixelLiteral) o).value;
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(value);
+        return Integer.hashCode(value);
     }
 
     @Override
@@ -1,35 +1,62 @@
 package nl.han.ica.icss.ast.literals;
 
+import nl.han.ica.icss.ast.ASTVisitor;
 import nl.han.ica.icss.ast.Literal;
 
-import java.util.Objects;
-
 public class ScalarLiteral extends Literal {
-    public int value;
+
+    private static final ScalarLiteral[] CACHE = new ScalarLiteral[CACHE_HIGH - CACHE_LOW + 1];
+
+    static {
+        for (int i = 0; i < CACHE.length; i++) {
+            CACHE[i] = new ScalarLiteral(CACHE_LOW + i);
+        }
+    }
+
+    public final int value;
 
     public ScalarLiteral(int value) {
         this.value = value;
     }
     public ScalarLiteral(String text) {
-        this.value = Integer.parseInt(text);
+        this(parse(text));
+    }
+
+    /**
+     * A shared instance, small values come from a cache
+     */
+    public static ScalarLiteral valueOf(int value) {
+        if (value >= CACHE_LOW && value <= CACHE_HIGH) {
+            return CACHE[value - CACHE_LOW];
+        }
+        return new ScalarLiteral(value);
+    }
+    public static ScalarLiteral valueOf(String text) {
+        return valueOf(parse(text));
+    }
+    private static int parse(String text) {
+        return Integer.parseInt(text);
     }
     @Override
     public String getNodeLabel() {
         return "Scalar literal (" + value + ")";
     }
 
+    @Override
+    public <T> T accept(ASTVisitor<T> visitor) {
+        return visitor.visitScalarLiteral(this);
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
-        if (!super.equals(o)) return false;
-        ScalarLiteral that = (ScalarLiteral) o;
-        return value == that.value;
+        return value == ((ScalarLiteral) o).value;
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(value);
+        return Integer.hashCode(value);
     }
 
     @Override
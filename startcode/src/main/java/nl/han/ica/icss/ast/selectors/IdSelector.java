@@ -1,5 +1,6 @@
 package nl.han.ica.icss.ast.selectors;
 
+import nl.han.ica.icss.ast.ASTVisitor;
 import nl.han.ica.icss.ast.Selector;
 
 import java.util.Objects;
@@ -15,6 +16,11 @@ public class IdSelector extends Selector {
         return "IdSelector " + id;
     }
 
+    @Override
+    public <T> T accept(ASTVisitor<T> visitor) {
+        return visitor.visitIdSelector(this);
+    }
+
     @Override
     public String toString() {
         return id;
@@ -1,5 +1,6 @@
 package nl.han.ica.icss.ast.selectors;
 
+import nl.han.ica.icss.ast.ASTVisitor;
 import nl.han.ica.icss.ast.Selector;
 
 import java.util.Objects;
@@ -15,6 +16,11 @@ public class TagSelector extends Selector {
         return "TagSelector " + tag;
     }
 
+    @Override
+    public <T> T accept(ASTVisitor<T> visitor) {
+        return visitor.visitTagSelector(this);
+    }
+
     @Override
     public String toString() {
         return tag;
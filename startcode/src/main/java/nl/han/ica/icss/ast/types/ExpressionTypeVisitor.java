@@ -0,0 +1,43 @@
+package nl.han.ica.icss.ast.types;
+
+import nl.han.ica.icss.ast.ASTBaseVisitor;
+import nl.han.ica.icss.ast.ASTNode;
+import nl.han.ica.icss.ast.literals.*;
+
+/**
+ * Tells the type of a literal. Any other node is {@link ExpressionType#UNDEFINED}.
+ */
+public class ExpressionTypeVisitor extends ASTBaseVisitor<ExpressionType> {
+
+    public static final ExpressionTypeVisitor INSTANCE = new ExpressionTypeVisitor();
+
+    @Override
+    public ExpressionType visitChildren(ASTNode node) {
+        return ExpressionType.UNDEFINED;
+    }
+
+    @Override
+    public ExpressionType visitBoolLiteral(BoolLiteral node) {
+        return ExpressionType.BOOL;
+    }
+
+    @Override
+    public ExpressionType visitColorLiteral(ColorLiteral node) {
+        return ExpressionType.COLOR;
+    }
+
+    @Override
+    public ExpressionType visitPercentageLiteral(PercentageLiteral node) {
+        return ExpressionType.PERCENTAGE;
+    }
+
+    @Override
+    public ExpressionType visitPixelLiteral(PixelLiteral node) {
+        return ExpressionType.PIXEL;
+    }
+
+    @Override
+    public ExpressionType visitScalarLiteral(ScalarLiteral node) {
+        return ExpressionType.SCALAR;
+    }
+}
@@ -1,18 +1,20 @@
 package nl.han.ica.icss.checker;
 
 import nl.han.ica.icss.ast.*;
-import nl.han.ica.icss.ast.literals.*;
 import nl.han.ica.icss.ast.operations.AddOperation;
 import nl.han.ica.icss.ast.operations.MultiplyOperation;
 import nl.han.ica.icss.ast.operations.SubtractOperation;
 import nl.han.ica.icss.ast.types.ExpressionType;
+import nl.han.ica.icss.ast.types.ExpressionTypeVisitor;
 
-import java.util.HashMap;
-import java.util.LinkedList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
 
-public class Checker {
+public class Checker extends ASTBaseVisitor<Void> {
 
-    public static final int GLOBAL_SCOPE = 0;
     public static final String A_COLOR_STYLE_SHOULD_CONTAIN_A_COLOR_LITERAL = "A color style should contain a color literal..";
     public static final String A_WIDTH_NODE_SHOULD_CONTAIN_A_PIXEL_OF_PERCENTAGE_LITERAL = "A width node should contain a pixel of percentage literal..";
     public static final String YOU_CAN_T_ADD_SUBTRACT_VALUES_WHICH_ARE_NOT_OF_THE_SAME_TYPE = "You can't add/subtract values which are not of the same type..";
@@ -23,52 +25,153 @@ public class Checker {
     public static final String HEIGHT = "height";
     public static final String EXPRESSION_IS_NOT_A_BOOLEAN = "Expression is not a boolean..";
 
-    private LinkedList<HashMap<String, ExpressionType>> variableTypes;
-    private int currentScope = 0;
+    //Style rules checked by one fork-join task, fewer aren't worth splitting
+    private static final int RULES_PER_TASK = 256;
+
+    //Types of the variables by slot, see VariableResolver.
+    //Slots below firstSlot are read from globalTypes, the others live in variableTypes from index 0.
+    private ExpressionType[] globalTypes;
+    private ExpressionType[] variableTypes;
+    private int firstSlot;
 
     public void check(final AST ast) {
-        variableTypes = new LinkedList<>();
-        variableTypes.add(new HashMap<>());
+        variableTypes = new ExpressionType[new VariableResolver().resolve(ast)];
+        firstSlot = 0;
 
-        traverseCheck(ast.root);
+        ast.root.accept(this);
     }
 
-    private void traverseCheck(final ASTNode node) {
-        if (node instanceof Stylerule) {
-            currentScope++;
-            variableTypes.add(new HashMap<>());
-        }
-        if (node instanceof VariableAssignment) {
-            addVariable((VariableAssignment) node);
-        }
+    /**
+     * Checks like {@link #check(AST)}, but the style rules concurrently on the common fork-join pool.
+     * The global assignments are checked first, in order, their types are only read after that.
+     * Every rule has its own slots for its local variables, so the rules don't share anything that changes.
+     * Errors end up on the same nodes as with check.
+     */
+    public void checkParallel(final AST ast) {
+        final ExpressionType[] globals = new ExpressionType[new VariableResolver().resolve(ast)];
+        variableTypes = globals;
+        firstSlot = 0;
 
-        if (node instanceof VariableReference) {
-            checkScope((VariableReference) node);
-        }
-        if (node instanceof Expression) {
-            checkOperator((Expression) node);
-        }
-        if (node instanceof Declaration) {
-            checkDeclaration((Declaration) node);
+        final List<Stylerule> rules = new ArrayList<>();
+        final List<Integer> firstLocalSlots = new ArrayList<>();
+        int globalCount = 0;
+        for (final ASTNode statement : ast.root.body) {
+            if (statement instanceof Stylerule) {
+                rules.add((Stylerule) statement);
+                firstLocalSlots.add(globalCount);
+            } else {
+                Cancellation.checkInterrupted();
+                statement.accept(this);
+                if (statement instanceof VariableAssignment) {
+                    globalCount = ((VariableAssignment) statement).name.slot + 1;
+                }
+            }
         }
-        if (node instanceof IfClause) {
-            checkIfClause((IfClause) node);
+
+        new CheckRules(Thread.currentThread(), globals, rules, firstLocalSlots, 0, rules.size()).invoke();
+    }
+
+    private static class CheckRules extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        //The thread that started the check, the tasks run on other threads
+        private final Thread caller;
+        private final ExpressionType[] globals;
+        private final List<Stylerule> rules;
+        private final List<Integer> firstLocalSlots;
+        private final int from;
+        private final int to;
+
+        private CheckRules(final Thread caller, final ExpressionType[] globals, final List<Stylerule> rules,
+                           final List<Integer> firstLocalSlots, final int from, final int to) {
+            this.caller = caller;
+            this.globals = globals;
+            this.rules = rules;
+            this.firstLocalSlots = firstLocalSlots;
+            this.from = from;
+            this.to = to;
         }
 
-        if (node.getChildren().size() > 0) {
-            for (final ASTNode child : node.getChildren()) {
-                traverseCheck(child);
+        @Override
+        protected void compute() {
+            if (to - from <= RULES_PER_TASK) {
+                final Checker checker = new Checker();
+                checker.globalTypes = globals;
+                checker.variableTypes = new ExpressionType[8];
+                for (int i = from; i < to; i++) {
+                    Cancellation.checkInterrupted(caller);
+                    checker.firstSlot = firstLocalSlots.get(i);
+                    rules.get(i).accept(checker);
+                }
+            } else {
+                final int middle = (from + to) >>> 1;
+                ForkJoinTask.invokeAll(new CheckRules(caller, globals, rules, firstLocalSlots, from, middle),
+                        new CheckRules(caller, globals, rules, firstLocalSlots, middle, to));
             }
         }
     }
 
+    @Override
+    public Void visitStylesheet(final Stylesheet node) {
+        for (final ASTNode statement : node.body) {
+            Cancellation.checkInterrupted();
+            statement.accept(this);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitVariableAssignment(final VariableAssignment node) {
+        addVariable(node);
+        return visitChildren(node);
+    }
+
+    @Override
+    public Void visitVariableReference(final VariableReference node) {
+        checkScope(node);
+        return visitChildren(node);
+    }
+
+    @Override
+    public Void visitDeclaration(final Declaration node) {
+        checkDeclaration(node);
+        return visitChildren(node);
+    }
+
+    @Override
+    public Void visitIfClause(final IfClause node) {
+        checkIfClause(node);
+        return visitChildren(node);
+    }
+
+    @Override
+    public Void visitAddOperation(final AddOperation node) {
+        checkAddOrSubtract(node);
+        return visitChildren(node);
+    }
+
+    @Override
+    public Void visitSubtractOperation(final SubtractOperation node) {
+        checkAddOrSubtract(node);
+        return visitChildren(node);
+    }
+
+    @Override
+    public Void visitMultiplyOperation(final MultiplyOperation node) {
+        checkMultiply(node);
+        return visitChildren(node);
+    }
+
     private void checkIfClause(final IfClause node) {
         final Expression expression = node.getConditionalExpression();
+        final ExpressionType type = typeOf(expression);
 
-        if (!(expression instanceof BoolLiteral) && (expression instanceof Literal)) {
+        if (type != ExpressionType.UNDEFINED && type != ExpressionType.BOOL) {
             node.setError(EXPRESSION_IS_NOT_A_BOOLEAN);
         } else if (expression instanceof VariableReference) {
-            if (contains((VariableReference) expression, ExpressionType.BOOL)) {
+            final ExpressionType variableType = lookup((VariableReference) expression);
+            if (variableType != null && variableType != ExpressionType.BOOL) {
                 node.setError(EXPRESSION_IS_NOT_A_BOOLEAN);
             }
         }
@@ -76,7 +179,7 @@ public class Checker {
 
     private void checkDeclaration(final Declaration node) {
         if (node.property.name.contains(COLOR)) {
-            if (!(node.expression instanceof ColorLiteral) && !(node.expression instanceof VariableReference)) {
+            if (typeOf(node.expression) != ExpressionType.COLOR && !(node.expression instanceof VariableReference)) {
                 node.setError(A_COLOR_STYLE_SHOULD_CONTAIN_A_COLOR_LITERAL);
             } else {
                 if (node.expression instanceof VariableReference && !contains((VariableReference) node.expression, ExpressionType.COLOR)) {
@@ -91,58 +194,69 @@ public class Checker {
         }
     }
 
-    private void checkOperator(final Expression node) {
-        if (node instanceof Operation) {
-            final Literal left = getLiteral(((Operation) node).lhs);
-            final Literal right = getLiteral(((Operation) node).rhs);
+    /**
+     * Operands that are literals must be of the same numeric type. Other operands are not checked.
+     */
+    private void checkAddOrSubtract(final Operation node) {
+        final ExpressionType left = typeOf(node.lhs);
+        final ExpressionType right = typeOf(node.rhs);
 
-            if (left != null && right != null) {
-                if (node instanceof AddOperation || node instanceof SubtractOperation) {
-                    if (!((left instanceof PixelLiteral && right instanceof PixelLiteral) ||
-                            (left instanceof PercentageLiteral && right instanceof PercentageLiteral) ||
-                            (left instanceof ScalarLiteral && right instanceof ScalarLiteral))) {
-                        node.setError(YOU_CAN_T_ADD_SUBTRACT_VALUES_WHICH_ARE_NOT_OF_THE_SAME_TYPE);
-                    }
-                }
-                if (node instanceof MultiplyOperation) {
-                    if (!((left instanceof ScalarLiteral) || (right instanceof ScalarLiteral))) {
-                        node.setError(YOU_CAN_T_MULTIPLY_VALUES_IF_AT_LEAST_ONE_OF_THEM_ISN_T_SCALAR);
-                    }
-                }
+        if (left != ExpressionType.UNDEFINED && right != ExpressionType.UNDEFINED) {
+            if (left != right || !(left == ExpressionType.PIXEL || left == ExpressionType.PERCENTAGE || left == ExpressionType.SCALAR)) {
+                node.setError(YOU_CAN_T_ADD_SUBTRACT_VALUES_WHICH_ARE_NOT_OF_THE_SAME_TYPE);
             }
         }
     }
 
-    private Literal getLiteral(final Expression node) {
-        if (node instanceof Literal) {
-            return (Literal) node;
+    private void checkMultiply(final Operation node) {
+        final ExpressionType left = typeOf(node.lhs);
+        final ExpressionType right = typeOf(node.rhs);
+
+        if (left != ExpressionType.UNDEFINED && right != ExpressionType.UNDEFINED) {
+            if (left != ExpressionType.SCALAR && right != ExpressionType.SCALAR) {
+                node.setError(YOU_CAN_T_MULTIPLY_VALUES_IF_AT_LEAST_ONE_OF_THEM_ISN_T_SCALAR);
+            }
         }
+    }
 
-        return null;
+    /**
+     * The type of a literal, UNDEFINED for anything else (including a missing operand).
+     */
+    private ExpressionType typeOf(final Expression node) {
+        if (node == null) {
+            return ExpressionType.UNDEFINED;
+        }
+        return node.accept(ExpressionTypeVisitor.INSTANCE);
+    }
+
+    /**
+     * The type of the variable in scope, null if there is none.
+     */
+    private ExpressionType lookup(final VariableReference node) {
+        if (node.slot == VariableReference.UNRESOLVED) {
+            return null;
+        }
+        if (node.slot < firstSlot) {
+            return globalTypes[node.slot];
+        }
+        final int index = node.slot - firstSlot;
+        return index < variableTypes.length ? variableTypes[index] : null;
     }
 
     private boolean contains(final VariableReference node, final ExpressionType type) {
-        return variableTypes.stream().anyMatch((variableType) -> variableType.get(node.name) == type);
+        return lookup(node) == type;
     }
 
     private void addVariable(final VariableAssignment node) {
-        if (node.expression instanceof ColorLiteral) {
-            variableTypes.get(currentScope).put(node.name.name, ExpressionType.COLOR);
-        } else if (node.expression instanceof BoolLiteral) {
-            variableTypes.get(currentScope).put(node.name.name, ExpressionType.BOOL);
-        } else if (node.expression instanceof PixelLiteral) {
-            variableTypes.get(currentScope).put(node.name.name, ExpressionType.PIXEL);
-        } else if (node.expression instanceof PercentageLiteral) {
-            variableTypes.get(currentScope).put(node.name.name, ExpressionType.PERCENTAGE);
-        } else if (node.expression instanceof ScalarLiteral) {
-            variableTypes.get(currentScope).put(node.name.name, ExpressionType.SCALAR);
-        } else {
-            variableTypes.get(currentScope).put(node.name.name, ExpressionType.UNDEFINED);
+        final int index = node.name.slot - firstSlot;
+        if (index >= variableTypes.length) {
+            variableTypes = Arrays.copyOf(variableTypes, Math.max(index + 1, variableTypes.length * 2));
         }
+        variableTypes[index] = typeOf(node.expression);
     }
 
     private void checkScope(final VariableReference node) {
-        if (!variableTypes.get(currentScope).containsKey(node.name) && !variableTypes.get(GLOBAL_SCOPE).containsKey(node.name)) {
+        if (node.slot == VariableReference.UNRESOLVED) {
             node.setError(VARIABLE_IS_NOT_AVAILABLE_FOR_CURRENT_SCOPE_OR_IS_NOT_DEFINED_AT_ALL);
         }
     }
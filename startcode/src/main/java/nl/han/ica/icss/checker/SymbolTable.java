@@ -0,0 +1,85 @@
+package nl.han.ica.icss.checker;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * A lexical scope chain backed by a single hash map.
+ * Defining a name remembers what it shadowed, popping a scope restores that, so a lookup
+ * is one hash probe no matter how deep or how many scopes there have been.
+ * @param <V> what is stored per name
+ */
+public class SymbolTable<V> {
+
+    private static final Object ABSENT = new Object();
+
+    private final HashMap<String, V> symbols = new HashMap<>();
+
+    //Undo log: the defined names and what they shadowed (ABSENT if nothing)
+    private final ArrayList<String> definedNames = new ArrayList<>();
+    private final ArrayList<Object> shadowed = new ArrayList<>();
+
+    //Size of the undo log when each open scope was pushed
+    private int[] scopeStarts = new int[8];
+    private int depth;
+
+    public void pushScope() {
+        if (depth == scopeStarts.length) {
+            scopeStarts = Arrays.copyOf(scopeStarts, depth * 2);
+        }
+        scopeStarts[depth++] = definedNames.size();
+    }
+
+    @SuppressWarnings("unchecked")
+    public void popScope() {
+        if (depth == 0) {
+            throw new IllegalStateException("No scope to pop");
+        }
+        final int start = scopeStarts[--depth];
+        for (int i = definedNames.size() - 1; i >= start; i--) {
+            final String name = definedNames.remove(i);
+            final Object previous = shadowed.remove(i);
+            if (previous == ABSENT) {
+                symbols.remove(name);
+            } else {
+                symbols.put(name, (V) previous);
+            }
+        }
+    }
+
+    /**
+     * Defines a name in the innermost scope, shadowing any outer definition until that scope is popped.
+     */
+    public void define(final String name, final V value) {
+        final Object previous = symbols.containsKey(name) ? symbols.get(name) : ABSENT;
+        symbols.put(name, value);
+        definedNames.add(name);
+        shadowed.add(previous);
+    }
+
+    /**
+     * @return the innermost visible definition of the name, or null if there is none
+     */
+    public V lookup(final String name) {
+        return symbols.get(name);
+    }
+
+    public boolean isDefined(final String name) {
+        return symbols.containsKey(name);
+    }
+
+    /**
+     * @return the number of definitions in all open scopes, shadowed ones included
+     */
+    public int size() {
+        return definedNames.size();
+    }
+
+    /**
+     * @return the number of open scopes, the global scope not counted
+     */
+    public int getDepth() {
+        return depth;
+    }
+}
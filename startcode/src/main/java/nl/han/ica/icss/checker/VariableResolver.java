@@ -0,0 +1,71 @@
+package nl.han.ica.icss.checker;
+
+import nl.han.ica.icss.ast.*;
+
+/**
+ * Binds every variable reference to a slot in a flat frame, so later passes index an array
+ * instead of looking names up.
+ * Each definition gets the next free slot of its scope, the slots of a scope are given out again
+ * once it is closed. Evaluating the tree in document order then only ever reads slots that were
+ * written by the definition in scope. References that don't resolve keep UNRESOLVED.
+ * Resolved references share the name string of their definition.
+ */
+public class VariableResolver extends ASTBaseVisitor<Void> {
+
+    private SymbolTable<VariableReference> definitions;
+    private int slotCount;
+
+    /**
+     * @return the number of slots a frame for this tree needs
+     */
+    public int resolve(final AST ast) {
+        definitions = new SymbolTable<>();
+        slotCount = 0;
+
+        ast.root.accept(this);
+
+        ast.slotCount = slotCount;
+        return slotCount;
+    }
+
+    @Override
+    public Void visitStylerule(final Stylerule node) {
+        definitions.pushScope();
+        visitChildren(node);
+        definitions.popScope();
+        return null;
+    }
+
+    @Override
+    public Void visitIfClause(final IfClause node) {
+        definitions.pushScope();
+        visitChildren(node);
+        definitions.popScope();
+        return null;
+    }
+
+    @Override
+    public Void visitVariableAssignment(final VariableAssignment node) {
+        //The value may refer to an earlier definition of the same name
+        if (node.expression != null) {
+            node.expression.accept(this);
+        }
+        final int slot = definitions.size();
+        node.name.slot = slot;
+        definitions.define(node.name.name, node.name);
+        slotCount = Math.max(slotCount, slot + 1);
+        return null;
+    }
+
+    @Override
+    public Void visitVariableReference(final VariableReference node) {
+        final VariableReference definition = definitions.lookup(node.name);
+        if (definition == null) {
+            node.slot = VariableReference.UNRESOLVED;
+        } else {
+            node.slot = definition.slot;
+            node.name = definition.name;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,255 @@
+package nl.han.ica.icss.cli;
+
+import nl.han.ica.icss.CompilationCache;
+import nl.han.ica.icss.Pipeline;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Headless compiler for ICSS files, no JavaFX involved.
+ * <p>
+ * Usage: {@code BatchCompiler [-o <output dir>] [-c <cache entries>] <file | dir | glob>...}
+ * or {@code BatchCompiler -w [-o <output dir>] <dir>} to keep recompiling changed files, see {@link WatchCompiler}.
+ * <p>
+ * Every input is compiled through its own {@link Pipeline} on a work-stealing pool sized to the
+ * number of cores. With a {@link CompilationCache}, inputs with the same content as one compiled
+ * before (in this run, or an earlier run in the same process) are not compiled again. The generated CSS is written next to the input, or into the same relative
+ * location below the output directory. Exits with 1 when any file has errors.
+ */
+public class BatchCompiler {
+
+    public static final String ICSS_EXTENSION = ".icss";
+    public static final String CSS_EXTENSION = ".css";
+
+    public static final int EXIT_OK = 0;
+    public static final int EXIT_ERRORS = 1;
+    public static final int EXIT_USAGE = 2;
+
+    private final Path outputDirectory;
+    private final CompilationCache cache;
+
+    public BatchCompiler(final Path outputDirectory) {
+        this(outputDirectory, null);
+    }
+
+    public BatchCompiler(final Path outputDirectory, final CompilationCache cache) {
+        this.outputDirectory = outputDirectory;
+        this.cache = cache;
+    }
+
+    public static void main(final String[] args) {
+        Path outputDirectory = null;
+        CompilationCache cache = null;
+        boolean watch = false;
+        final List<String> inputs = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("-w")) {
+                watch = true;
+            } else if (args[i].equals("-o") && i + 1 < args.length) {
+                outputDirectory = Path.of(args[++i]);
+            } else if (args[i].equals("-c") && i + 1 < args.length) {
+                cache = new CompilationCache(Integer.parseInt(args[++i]));
+            } else {
+                inputs.add(args[i]);
+            }
+        }
+        if (inputs.isEmpty() || watch && (inputs.size() > 1 || !Files.isDirectory(Path.of(inputs.get(0))))) {
+            System.err.println("Usage: BatchCompiler [-o <output dir>] [-c <cache entries>] <file | dir | glob>...");
+            System.err.println("       BatchCompiler -w [-o <output dir>] <dir>");
+            System.exit(EXIT_USAGE);
+        }
+
+        if (watch) {
+            try (WatchCompiler watcher = new WatchCompiler(Path.of(inputs.get(0)), outputDirectory,
+                    WatchCompiler.DEFAULT_DEBOUNCE_MILLIS, System.out::println)) {
+                watcher.run();
+            } catch (IOException e) {
+                System.err.println(e);
+                System.exit(EXIT_USAGE);
+            }
+            return;
+        }
+
+        try {
+            final BatchCompiler compiler = new BatchCompiler(outputDirectory, cache);
+            System.exit(compiler.compile(compiler.collect(inputs)));
+        } catch (IOException e) {
+            System.err.println(e);
+            System.exit(EXIT_USAGE);
+        }
+    }
+
+    /**
+     * Resolves the command line arguments to the ICSS files to compile, each mapped to the
+     * directory its output path is relative to. A file named on its own must be an ICSS file.
+     */
+    public Map<Path, Path> collect(final List<String> inputs) throws IOException {
+        final Map<Path, Path> files = new LinkedHashMap<>();
+        for (final String input : inputs) {
+            if (isGlob(input)) {
+                final Path root = globRoot(input);
+                final PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + input);
+                walk(root, files, matcher);
+            } else {
+                final Path path = Path.of(input);
+                if (Files.isDirectory(path)) {
+                    walk(path, files, null);
+                } else if (Files.isRegularFile(path)) {
+                    if (!input.endsWith(ICSS_EXTENSION)) {
+                        throw new IOException("Not an " + ICSS_EXTENSION + " file: " + input);
+                    }
+                    files.put(path, path.toAbsolutePath().getParent());
+                } else {
+                    throw new IOException("No such file or directory: " + input);
+                }
+            }
+        }
+        return files;
+    }
+
+    private void walk(final Path root, final Map<Path, Path> files, final PathMatcher matcher) throws IOException {
+        try (Stream<Path> paths = Files.walk(root)) {
+            for (final Path path : paths.collect(Collectors.toList())) {
+                if (Files.isRegularFile(path) && path.toString().endsWith(ICSS_EXTENSION)
+                        && (matcher == null || matcher.matches(path))) {
+                    files.putIfAbsent(path, root.toAbsolutePath());
+                }
+            }
+        }
+    }
+
+    private static boolean isGlob(final String input) {
+        return input.chars().anyMatch(c -> c == '*' || c == '?' || c == '[' || c == '{');
+    }
+
+    /**
+     * The directory to start walking from: everything before the first path element with a wildcard.
+     */
+    private static Path globRoot(final String glob) {
+        final String separators = "/" + FileSystems.getDefault().getSeparator();
+        int end = 0;
+        for (int i = 0; i < glob.length() && !isGlob(String.valueOf(glob.charAt(i))); i++) {
+            if (separators.indexOf(glob.charAt(i)) >= 0) {
+                end = i + 1;
+            }
+        }
+        return Path.of(glob.substring(0, end));
+    }
+
+    /**
+     * Compiles all files in parallel and prints their errors and a throughput summary.
+     *
+     * @return the exit code
+     */
+    public int compile(final Map<Path, Path> files) {
+        final long start = System.nanoTime();
+
+        final ExecutorService pool = Executors.newWorkStealingPool(Runtime.getRuntime().availableProcessors());
+        final List<Future<Result>> futures = new ArrayList<>(files.size());
+        for (final Map.Entry<Path, Path> file : files.entrySet()) {
+            futures.add(pool.submit(() -> compile(file.getKey(), file.getValue())));
+        }
+
+        int failed = 0;
+        long bytes = 0;
+        for (final Future<Result> future : futures) {
+            final Result result;
+            try {
+                result = future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                pool.shutdownNow();
+                return EXIT_USAGE;
+            } catch (ExecutionException e) {
+                System.err.println(e.getCause());
+                failed++;
+                continue;
+            }
+            bytes += result.bytes;
+            if (!result.errors.isEmpty()) {
+                failed++;
+                for (final String error : result.errors) {
+                    System.err.println(result.input + ": " + error);
+                }
+            }
+        }
+        pool.shutdown();
+
+        final double seconds = Math.max(System.nanoTime() - start, 1) / 1e9;
+        System.out.printf("Compiled %d files (%d failed, %.2f MB) in %.3f s: %.1f files/s, %.2f MB/s%n",
+                files.size(), failed, bytes / 1e6, seconds, files.size() / seconds, bytes / 1e6 / seconds);
+        if (cache != null) {
+            System.out.println(cache);
+        }
+
+        return failed == 0 ? EXIT_OK : EXIT_ERRORS;
+    }
+
+    private Result compile(final Path input, final Path root) throws IOException {
+        final Pipeline pipeline = new Pipeline();
+        if (cache != null) {
+            //The cache is keyed on the text, so that has to be read anyway
+            pipeline.setCache(cache);
+            final String css = pipeline.compile(new String(Files.readAllBytes(input), StandardCharsets.UTF_8));
+            if (css != null) {
+                Files.writeString(createOutputPath(input, root), css, StandardCharsets.UTF_8);
+            }
+        } else {
+            pipeline.parse(input);
+            if (pipeline.isParsed() && pipeline.check()) {
+                pipeline.transform();
+                try (Writer writer = Files.newBufferedWriter(createOutputPath(input, root), StandardCharsets.UTF_8)) {
+                    pipeline.generate(writer);
+                }
+            }
+        }
+        return new Result(input, Files.size(input), pipeline.getErrors());
+    }
+
+    Path createOutputPath(final Path input, final Path root) throws IOException {
+        final Path output = outputPath(input, root);
+        if (output.getParent() != null) {
+            Files.createDirectories(output.getParent());
+        }
+        return output;
+    }
+
+    Path outputPath(final Path input, final Path root) {
+        final String name = input.getFileName().toString();
+        final String base = name.endsWith(ICSS_EXTENSION)
+                ? name.substring(0, name.length() - ICSS_EXTENSION.length()) : name;
+        final String cssName = base + CSS_EXTENSION;
+        if (outputDirectory == null) {
+            return input.resolveSibling(cssName);
+        }
+        return outputDirectory.resolve(root.relativize(input.toAbsolutePath())).resolveSibling(cssName);
+    }
+
+    private static class Result {
+        private final Path input;
+        private final long bytes;
+        private final List<String> errors;
+
+        private Result(final Path input, final long bytes, final List<String> errors) {
+            this.input = input;
+            this.bytes = bytes;
+            this.errors = errors;
+        }
+    }
+}
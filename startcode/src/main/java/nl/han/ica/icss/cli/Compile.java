@@ -0,0 +1,108 @@
+package nl.han.ica.icss.cli;
+
+import nl.han.ica.icss.Pipeline;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The fastest way to compile a few files from a script: everything runs on the main thread and
+ * only the pipeline is loaded, no JavaFX, no thread pool. Start it with the AppCDS archive of the
+ * {@code appcds} profile to also skip most class loading.
+ * <p>
+ * Usage: {@code Compile [-t] [-o <output dir>] <file | ->...}
+ * <p>
+ * Each file is compiled to a {@code .css} file next to it or in the output directory, {@code -}
+ * compiles standard input to standard output. {@code -t} reports how long after the start of the
+ * JVM the first file was written. Exits with 1 when any input has errors or can't be read.
+ */
+public final class Compile {
+
+    private Compile() {
+    }
+
+    public static void main(final String[] args) throws IOException {
+        boolean timing = false;
+        Path outputDirectory = null;
+        final List<String> inputs = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("-t")) {
+                timing = true;
+            } else if (args[i].equals("-o") && i + 1 < args.length) {
+                outputDirectory = Path.of(args[++i]);
+            } else {
+                inputs.add(args[i]);
+            }
+        }
+        if (inputs.isEmpty()) {
+            System.err.println("Usage: Compile [-t] [-o <output dir>] <file | ->...");
+            System.exit(BatchCompiler.EXIT_USAGE);
+        }
+        if (outputDirectory != null) {
+            Files.createDirectories(outputDirectory);
+        }
+
+        int exitCode = BatchCompiler.EXIT_OK;
+        for (final String input : inputs) {
+            try {
+                if (!compile(input, outputDirectory)) {
+                    exitCode = BatchCompiler.EXIT_ERRORS;
+                }
+            } catch (IOException e) {
+                //A file that can't be read or written doesn't stop the others
+                System.err.println(input + ": " + e);
+                exitCode = BatchCompiler.EXIT_ERRORS;
+            }
+            if (timing) {
+                timing = false;
+                final Instant start = ProcessHandle.current().info().startInstant().orElse(null);
+                if (start != null) {
+                    System.err.println("First file compiled " + Duration.between(start, Instant.now()).toMillis()
+                            + " ms after the JVM started");
+                }
+            }
+        }
+        System.exit(exitCode);
+    }
+
+    private static boolean compile(final String input, final Path outputDirectory) throws IOException {
+        final Pipeline pipeline = new Pipeline();
+        if (input.equals("-")) {
+            pipeline.parseString(new String(System.in.readAllBytes(), StandardCharsets.UTF_8));
+        } else {
+            pipeline.parse(Path.of(input));
+        }
+        if (pipeline.isParsed() && pipeline.check()) {
+            pipeline.transform();
+            if (input.equals("-")) {
+                final Writer out = new OutputStreamWriter(System.out, StandardCharsets.UTF_8);
+                pipeline.generate(out);
+                out.flush();
+            } else {
+                try (Writer out = Files.newBufferedWriter(outputPath(Path.of(input), outputDirectory), StandardCharsets.UTF_8)) {
+                    pipeline.generate(out);
+                }
+            }
+        }
+        for (final String error : pipeline.getErrors()) {
+            System.err.println(input + ": " + error);
+        }
+        return pipeline.getErrors().isEmpty();
+    }
+
+    private static Path outputPath(final Path input, final Path outputDirectory) {
+        final String name = input.getFileName().toString();
+        final String base = name.endsWith(BatchCompiler.ICSS_EXTENSION)
+                ? name.substring(0, name.length() - BatchCompiler.ICSS_EXTENSION.length()) : name;
+        final Path output = Path.of(base + BatchCompiler.CSS_EXTENSION);
+        return outputDirectory == null ? input.resolveSibling(output) : outputDirectory.resolve(output);
+    }
+}
@@ -0,0 +1,156 @@
+package nl.han.ica.icss.cli;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Thin client for a {@link CompileDaemon}. It only sends paths and writes back what the daemon
+ * generated, so it starts fast and all the compiling happens in the warm daemon.
+ * <p>
+ * Usage: {@code CompileClient [-p <port>] [--stop] <file | ->...}
+ * <p>
+ * Each file is compiled to a {@code .css} file next to it, {@code -} compiles standard input to
+ * standard output. {@code --stop} stops the daemon. Exits with 1 when any input has errors.
+ */
+public class CompileClient implements Closeable {
+
+    /**
+     * The outcome of one compile request.
+     */
+    public static class Result {
+        //null when the input has errors
+        public final String css;
+        public final List<String> errors;
+
+        Result(final String css, final List<String> errors) {
+            this.css = css;
+            this.errors = List.copyOf(errors);
+        }
+    }
+
+    private final Socket socket;
+    private final DataInputStream in;
+    private final DataOutputStream out;
+
+    public CompileClient(final int port) throws IOException {
+        socket = new Socket(InetAddress.getLoopbackAddress(), port);
+        socket.setTcpNoDelay(true);
+        in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+    }
+
+    public static void main(final String[] args) {
+        int port = DaemonProtocol.DEFAULT_PORT;
+        boolean stop = false;
+        final List<String> inputs = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("-p") && i + 1 < args.length) {
+                port = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("--stop")) {
+                stop = true;
+            } else {
+                inputs.add(args[i]);
+            }
+        }
+        if (inputs.isEmpty() && !stop) {
+            System.err.println("Usage: CompileClient [-p <port>] [--stop] <file | ->...");
+            System.exit(BatchCompiler.EXIT_USAGE);
+        }
+
+        try (CompileClient client = new CompileClient(port)) {
+            int exitCode = BatchCompiler.EXIT_OK;
+            for (final String input : inputs) {
+                if (!client.compileInto(input)) {
+                    exitCode = BatchCompiler.EXIT_ERRORS;
+                }
+            }
+            if (stop) {
+                client.stop();
+            }
+            System.exit(exitCode);
+        } catch (IOException e) {
+            System.err.println(e);
+            System.exit(BatchCompiler.EXIT_USAGE);
+        }
+    }
+
+    /**
+     * Compiles a file next to itself, or standard input to standard output, and prints the errors.
+     *
+     * @return whether the input compiled without errors
+     */
+    private boolean compileInto(final String input) throws IOException {
+        final Result result;
+        final Path output;
+        if (input.equals("-")) {
+            result = compile(new String(System.in.readAllBytes(), StandardCharsets.UTF_8));
+            output = null;
+        } else {
+            final Path path = Path.of(input);
+            result = compile(path);
+            final String name = path.getFileName().toString();
+            final String base = name.endsWith(BatchCompiler.ICSS_EXTENSION)
+                    ? name.substring(0, name.length() - BatchCompiler.ICSS_EXTENSION.length()) : name;
+            output = path.resolveSibling(base + BatchCompiler.CSS_EXTENSION);
+        }
+
+        for (final String error : result.errors) {
+            System.err.println(input + ": " + error);
+        }
+        if (result.css == null) {
+            return false;
+        }
+        if (output == null) {
+            final PrintStream stdout = new PrintStream(System.out, false, StandardCharsets.UTF_8);
+            stdout.print(result.css);
+            stdout.flush();
+        } else {
+            Files.writeString(output, result.css, StandardCharsets.UTF_8);
+        }
+        return true;
+    }
+
+    public Result compile(final String source) throws IOException {
+        out.writeByte(DaemonProtocol.SOURCE);
+        DaemonProtocol.writeString(out, source);
+        out.flush();
+        return DaemonProtocol.readResult(in);
+    }
+
+    /**
+     * Lets the daemon read the file itself, which saves sending it over.
+     */
+    public Result compile(final Path path) throws IOException {
+        out.writeByte(DaemonProtocol.PATH);
+        DaemonProtocol.writeString(out, path.toAbsolutePath().toString());
+        out.flush();
+        return DaemonProtocol.readResult(in);
+    }
+
+    /**
+     * Stops the daemon from accepting connections, and closes this one.
+     */
+    public void stop() throws IOException {
+        out.writeByte(DaemonProtocol.STOP);
+        out.flush();
+        in.readByte();
+        close();
+    }
+
+    @Override
+    public void close() throws IOException {
+        socket.close();
+    }
+}
@@ -0,0 +1,279 @@
+package nl.han.ica.icss.cli;
+
+import nl.han.ica.icss.CompilationCache;
+import nl.han.ica.icss.Pipeline;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A long-lived compile server, so compiles don't pay for JVM startup, class loading and the
+ * deserialization of the lexer's and parser's ATN every time. ANTLR's prediction DFA cache is
+ * shared by all parsers in the JVM, so it and the JIT stay warm between requests.
+ * <p>
+ * Usage: {@code CompileDaemon [-p <port>] [-t <threads>] [-m <connections>] [-c <cache entries>]}
+ * <p>
+ * The server listens on the loopback interface only. Every connection gets a thread of its own that
+ * reads its requests, and every request is compiled by a new {@link Pipeline} on a fixed pool of
+ * {@code -t} workers, with a shared {@link CompilationCache} if one is given. So idle connections
+ * don't hold on to a worker: at most {@code -t} compiles run at the same time, more wait for a free
+ * worker. At most {@code -m} connections ({@link #DEFAULT_MAX_CONNECTIONS} by default) are open at
+ * the same time, a client over the limit gets a FAILED response to its first request and is
+ * disconnected. A connection that sends no request for {@link #IDLE_TIMEOUT_MILLIS} is closed.
+ * See {@link CompileClient} for the client and {@link DaemonProtocol} for the protocol.
+ */
+public class CompileDaemon implements Closeable {
+
+    /**
+     * How long a connection may wait between requests before it is closed.
+     */
+    public static final int IDLE_TIMEOUT_MILLIS = 60_000;
+    public static final int DEFAULT_MAX_CONNECTIONS = 64;
+    //How long a refused client gets to send its request, so closing doesn't reset the connection
+    private static final int REFUSE_TIMEOUT_MILLIS = 100;
+
+    private final ServerSocket serverSocket;
+    private final ExecutorService connections;
+    private final int maxConnections;
+    private final ExecutorService workers;
+    private final CompilationCache cache;
+    private final Thread acceptor;
+
+    /**
+     * Starts listening right away, with at most {@link #DEFAULT_MAX_CONNECTIONS} connections.
+     */
+    public CompileDaemon(final int port, final int threads, final CompilationCache cache) throws IOException {
+        this(port, threads, DEFAULT_MAX_CONNECTIONS, cache);
+    }
+
+    /**
+     * Starts listening right away.
+     *
+     * @param port the port to listen on, 0 for any free port
+     * @param threads the number of requests compiled at the same time
+     * @param maxConnections the number of connections open at the same time
+     * @param cache shared by all requests, or null
+     */
+    public CompileDaemon(final int port, final int threads, final int maxConnections,
+                         final CompilationCache cache) throws IOException {
+        this.serverSocket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+        //No queue: a connection gets a thread right away or is refused
+        this.connections = new ThreadPoolExecutor(0, maxConnections, IDLE_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS,
+                new SynchronousQueue<>(), runnable -> {
+            final Thread thread = new Thread(runnable, "icss-daemon-connection");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.maxConnections = maxConnections;
+        this.workers = Executors.newFixedThreadPool(threads, runnable -> {
+            final Thread thread = new Thread(runnable, "icss-daemon-worker");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.cache = cache;
+        this.acceptor = new Thread(this::accept, "icss-daemon-acceptor");
+        acceptor.start();
+    }
+
+    public static void main(final String[] args) {
+        int port = DaemonProtocol.DEFAULT_PORT;
+        int threads = Runtime.getRuntime().availableProcessors();
+        int maxConnections = DEFAULT_MAX_CONNECTIONS;
+        CompilationCache cache = null;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("-p") && i + 1 < args.length) {
+                port = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("-t") && i + 1 < args.length) {
+                threads = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("-m") && i + 1 < args.length) {
+                maxConnections = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("-c") && i + 1 < args.length) {
+                cache = new CompilationCache(Integer.parseInt(args[++i]));
+            } else {
+                System.err.println("Usage: CompileDaemon [-p <port>] [-t <threads>] [-m <connections>] [-c <cache entries>]");
+                System.exit(BatchCompiler.EXIT_USAGE);
+            }
+        }
+
+        try {
+            final CompileDaemon daemon = new CompileDaemon(port, threads, maxConnections, cache);
+            System.out.println("Listening on " + daemon.serverSocket.getLocalSocketAddress());
+            daemon.acceptor.join();
+        } catch (IOException e) {
+            System.err.println(e);
+            System.exit(BatchCompiler.EXIT_USAGE);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * Stops accepting connections. Requests in progress are finished, open connections are
+     * closed at their next request.
+     */
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+        connections.shutdown();
+        workers.shutdown();
+    }
+
+    /**
+     * Waits until the server is closed, by {@link #close()} or a STOP request.
+     */
+    public boolean awaitClose(final long timeout, final TimeUnit unit) throws InterruptedException {
+        acceptor.join(unit.toMillis(timeout));
+        return !acceptor.isAlive();
+    }
+
+    private void accept() {
+        while (!serverSocket.isClosed()) {
+            try {
+                final Socket socket = serverSocket.accept();
+                try {
+                    connections.execute(() -> serve(socket));
+                } catch (RejectedExecutionException e) {
+                    refuse(socket);
+                }
+            } catch (SocketException e) {
+                //Closed
+            } catch (IOException e) {
+                System.err.println(e);
+            }
+        }
+    }
+
+    /**
+     * Answers the first request of a connection over the limit with FAILED and closes it.
+     */
+    private void refuse(final Socket socket) {
+        try (socket) {
+            final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            DaemonProtocol.writeResult(out, null, List.of("Too many connections, at most " + maxConnections));
+            out.flush();
+            socket.shutdownOutput();
+            //Closing with the request unread would reset the connection before the client reads the response
+            socket.setSoTimeout(REFUSE_TIMEOUT_MILLIS);
+            socket.getInputStream().skip(Long.MAX_VALUE);
+        } catch (IOException e) {
+            //The client is gone or too slow, it is disconnected either way
+        }
+    }
+
+    private void serve(final Socket socket) {
+        try (socket;
+             DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()))) {
+            socket.setSoTimeout(IDLE_TIMEOUT_MILLIS);
+            while (true) {
+                final byte kind;
+                try {
+                    kind = in.readByte();
+                } catch (EOFException | SocketTimeoutException e) {
+                    return;
+                }
+                switch (kind) {
+                    case DaemonProtocol.SOURCE: {
+                        final String text = DaemonProtocol.readString(in);
+                        await(() -> compile(text, null, out));
+                        break;
+                    }
+                    case DaemonProtocol.PATH: {
+                        final String path = DaemonProtocol.readString(in);
+                        await(() -> compile(null, path, out));
+                        break;
+                    }
+                    case DaemonProtocol.STOP:
+                        out.writeByte(DaemonProtocol.OK);
+                        out.flush();
+                        close();
+                        return;
+                    default:
+                        throw new IOException("Unknown request " + kind);
+                }
+                out.flush();
+            }
+        } catch (RejectedExecutionException e) {
+            //Closed
+        } catch (IOException e) {
+            System.err.println(socket.getRemoteSocketAddress() + ": " + e);
+        }
+    }
+
+    private interface Request {
+        void run() throws IOException;
+    }
+
+    //Runs the request on a worker, the connection waits for it so responses go out in order
+    private void await(final Request request) throws IOException {
+        final Future<?> result = workers.submit(() -> {
+            request.run();
+            return null;
+        });
+        try {
+            result.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted", e);
+        }
+    }
+
+    /**
+     * Compiles the text, or when it is null the file, and writes the result. A compile that fails
+     * with an exception is reported as an error, it doesn't cost the client its connection.
+     */
+    private void compile(final String text, final String path, final DataOutputStream out) throws IOException {
+        final Pipeline pipeline = new Pipeline();
+        pipeline.setCache(cache);
+        String css = null;
+        try {
+            if (text != null) {
+                css = pipeline.compile(text);
+            } else if (cache != null) {
+                //The cache is keyed on the text, so that has to be read anyway
+                css = pipeline.compile(new String(Files.readAllBytes(Path.of(path)), StandardCharsets.UTF_8));
+            } else {
+                pipeline.parse(Path.of(path));
+                if (pipeline.isParsed() && pipeline.check()) {
+                    pipeline.transform();
+                    css = pipeline.generate();
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            DaemonProtocol.writeResult(out, null, List.of(e.toString()));
+            return;
+        }
+        DaemonProtocol.writeResult(out, css, pipeline.getErrors());
+    }
+}
@@ -0,0 +1,70 @@
+package nl.han.ica.icss.cli;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The messages between {@link CompileDaemon} and {@link CompileClient}.
+ * <p>
+ * A request is a kind byte, followed by a string for SOURCE and PATH. A response is OK or FAILED,
+ * the number of errors and the errors, then for OK the CSS. STOP is answered with OK only.
+ * Strings are an int byte count followed by UTF-8. A connection can carry any number of requests.
+ */
+final class DaemonProtocol {
+
+    static final int DEFAULT_PORT = 4180;
+
+    static final byte SOURCE = 'S';
+    static final byte PATH = 'P';
+    static final byte STOP = 'Q';
+
+    static final byte OK = 0;
+    static final byte FAILED = 1;
+
+    private DaemonProtocol() {
+    }
+
+    static void writeString(final DataOutputStream out, final String text) throws IOException {
+        final byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    static String readString(final DataInputStream in) throws IOException {
+        final int length = in.readInt();
+        if (length < 0) {
+            throw new IOException("Negative string length " + length);
+        }
+        final byte[] bytes = in.readNBytes(length);
+        if (bytes.length < length) {
+            throw new IOException("Connection closed in the middle of a string");
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    static void writeResult(final DataOutputStream out, final String css, final List<String> errors) throws IOException {
+        out.writeByte(css != null ? OK : FAILED);
+        out.writeInt(errors.size());
+        for (final String error : errors) {
+            writeString(out, error);
+        }
+        if (css != null) {
+            writeString(out, css);
+        }
+    }
+
+    static CompileClient.Result readResult(final DataInputStream in) throws IOException {
+        final byte status = in.readByte();
+        final int errorCount = in.readInt();
+        final List<String> errors = new ArrayList<>(Math.min(errorCount, 1024));
+        for (int i = 0; i < errorCount; i++) {
+            errors.add(readString(in));
+        }
+        final String css = status == OK ? readString(in) : null;
+        return new CompileClient.Result(css, errors);
+    }
+}
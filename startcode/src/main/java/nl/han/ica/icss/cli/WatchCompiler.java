@@ -0,0 +1,230 @@
+package nl.han.ica.icss.cli;
+
+import nl.han.ica.icss.CompilationCache;
+import nl.han.ica.icss.Pipeline;
+import nl.han.ica.icss.ast.AST;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Watches a directory tree and recompiles the ICSS files that change, until it is closed.
+ * <p>
+ * Change events are collected until none came in for the debounce time, so an editor that writes
+ * a file in several steps, or a checkout that touches many files, causes one compile per file.
+ * The files are compiled on a pool, each file after its previous compile is done. A file whose
+ * content didn't change since its last compile is not compiled again. The AST and errors of the
+ * last compile of every file are kept, see {@link #getCompiled(Path)}. Deleting a file deletes
+ * its CSS too.
+ * <p>
+ * ICSS has no imports, so a file only depends on itself and nothing else has to be recompiled.
+ * Every compile is reported with its latency from the moment the file was saved.
+ */
+public class WatchCompiler implements Closeable {
+
+    public static final long DEFAULT_DEBOUNCE_MILLIS = 50;
+
+    /**
+     * The last compile of a file.
+     */
+    public static class Compiled {
+        //Hash of the text, see CompilationCache.key
+        public final String key;
+        public final AST ast;
+        public final List<String> errors;
+
+        private Compiled(final String key, final AST ast, final List<String> errors) {
+            this.key = key;
+            this.ast = ast;
+            this.errors = List.copyOf(errors);
+        }
+    }
+
+    private final Path root;
+    private final BatchCompiler layout;
+    private final long debounceMillis;
+    private final Consumer<String> log;
+
+    private final WatchService watcher;
+    private final ExecutorService pool;
+    private final Map<Path, Compiled> compiled = new ConcurrentHashMap<>();
+    //The last compile scheduled for every file, a file is removed when its last compile is done
+    private final Map<Path, CompletableFuture<Void>> scheduled = new ConcurrentHashMap<>();
+
+    /**
+     * @param root the directory to watch
+     * @param outputDirectory where the CSS goes, relative to root, or null to write it next to the input
+     * @param log receives a line for every compile and error
+     */
+    public WatchCompiler(final Path root, final Path outputDirectory, final long debounceMillis,
+                         final Consumer<String> log) throws IOException {
+        this.root = root.toAbsolutePath();
+        this.layout = new BatchCompiler(outputDirectory);
+        this.debounceMillis = debounceMillis;
+        this.log = log;
+        this.watcher = root.getFileSystem().newWatchService();
+        this.pool = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), runnable -> {
+            final Thread thread = new Thread(runnable, "icss-watch-compiler");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * @return the last compile of the file, or null if it wasn't compiled (yet)
+     */
+    public Compiled getCompiled(final Path file) {
+        return compiled.get(file.toAbsolutePath());
+    }
+
+    /**
+     * Compiles every file once, then watches for changes until {@link #close()} is called.
+     */
+    public void run() throws IOException {
+        final Set<Path> changed = new LinkedHashSet<>();
+        register(root, changed);
+        changed.forEach(this::schedule);
+        log.accept("Watching " + root);
+
+        try {
+            while (true) {
+                changed.clear();
+                collect(watcher.take(), changed);
+                WatchKey key;
+                while ((key = watcher.poll(debounceMillis, TimeUnit.MILLISECONDS)) != null) {
+                    collect(key, changed);
+                }
+                changed.forEach(this::schedule);
+            }
+        } catch (ClosedWatchServiceException e) {
+            //Closed
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        watcher.close();
+        pool.shutdown();
+    }
+
+    /**
+     * Watches the directory and the directories below it, and adds the ICSS files in them.
+     * A directory is listed after it is watched, so a file created in between isn't missed.
+     */
+    private void register(final Path directory, final Set<Path> files) throws IOException {
+        directory.register(watcher, StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+        final List<Path> entries;
+        try (Stream<Path> paths = Files.list(directory)) {
+            entries = paths.collect(Collectors.toList());
+        }
+        for (final Path path : entries) {
+            if (Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS)) {
+                register(path, files);
+            } else if (isSource(path)) {
+                files.add(path);
+            }
+        }
+    }
+
+    private void collect(final WatchKey key, final Set<Path> changed) {
+        final Path directory = (Path) key.watchable();
+        for (final WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                //Events were lost, look at everything again
+                rescan(root, changed);
+                continue;
+            }
+            final Path path = directory.resolve((Path) event.context());
+            if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory(path)) {
+                rescan(path, changed);
+            } else if (isSource(path)) {
+                changed.add(path);
+            }
+        }
+        key.reset();
+    }
+
+    private void rescan(final Path directory, final Set<Path> changed) {
+        try {
+            register(directory, changed);
+        } catch (IOException e) {
+            log.accept(directory + ": " + e);
+        }
+    }
+
+    private static boolean isSource(final Path path) {
+        return path.toString().endsWith(BatchCompiler.ICSS_EXTENSION);
+    }
+
+    private void schedule(final Path file) {
+        final CompletableFuture<Void> previous = scheduled.get(file);
+        final CompletableFuture<Void> next = previous == null
+                ? CompletableFuture.runAsync(() -> compile(file), pool)
+                : previous.thenRunAsync(() -> compile(file), pool);
+        scheduled.put(file, next);
+        //Unless a later compile was scheduled in the meantime
+        next.whenComplete((result, e) -> scheduled.remove(file, next));
+    }
+
+    private void compile(final Path file) {
+        final long start = System.currentTimeMillis();
+        try {
+            final long saved = Files.getLastModifiedTime(file).toMillis();
+            final String text = new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+            final String key = CompilationCache.key(text);
+            final Compiled previous = compiled.get(file);
+            if (previous != null && previous.key.equals(key)) {
+                return;
+            }
+
+            final Pipeline pipeline = new Pipeline();
+            final String css = pipeline.compile(text);
+            if (css != null) {
+                Files.writeString(layout.createOutputPath(file, root), css, StandardCharsets.UTF_8);
+            }
+            compiled.put(file, new Compiled(key, pipeline.getAST(), pipeline.getErrors()));
+
+            for (final String error : pipeline.getErrors()) {
+                log.accept(file + ": " + error);
+            }
+            final long done = System.currentTimeMillis();
+            log.accept(String.format("%s %s in %d ms, %d ms after save", css != null ? "Compiled" : "Failed",
+                    root.relativize(file), done - start, Math.max(done - saved, 0)));
+        } catch (NoSuchFileException e) {
+            compiled.remove(file);
+            try {
+                Files.deleteIfExists(layout.outputPath(file, root));
+                log.accept("Removed " + root.relativize(file));
+            } catch (IOException deleteError) {
+                log.accept(file + ": " + deleteError);
+            }
+        } catch (IOException | RuntimeException e) {
+            log.accept(file + ": " + e);
+        }
+    }
+}
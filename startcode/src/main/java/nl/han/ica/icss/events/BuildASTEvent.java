@@ -0,0 +1,11 @@
+package nl.han.ica.icss.events;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("nl.han.ica.icss.BuildAST")
+@Label("ICSS Build AST")
+@Description("Building the AST from the parse tree, or loading a saved AST")
+public class BuildASTEvent extends StageEvent {
+}
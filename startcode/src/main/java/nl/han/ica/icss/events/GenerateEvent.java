@@ -0,0 +1,15 @@
+package nl.han.ica.icss.events;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("nl.han.ica.icss.Generate")
+@Label("ICSS Generate")
+@Description("Generating CSS from the AST")
+public class GenerateEvent extends StageEvent {
+
+    @Label("Output Size")
+    @Description("Characters of CSS generated")
+    public long outputSize;
+}
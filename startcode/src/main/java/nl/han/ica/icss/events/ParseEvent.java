@@ -0,0 +1,15 @@
+package nl.han.ica.icss.events;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("nl.han.ica.icss.Parse")
+@Label("ICSS Parse")
+@Description("Lexing and parsing the input into a parse tree, or an incremental reparse")
+public class ParseEvent extends StageEvent {
+
+    @Label("Token Count")
+    @Description("Tokens of the input, the end of file included, -1 for an incremental reparse")
+    public long tokenCount;
+}
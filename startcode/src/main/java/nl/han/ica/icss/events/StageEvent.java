@@ -0,0 +1,35 @@
+package nl.han.ica.icss.events;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.StackTrace;
+
+/**
+ * A Flight Recorder event for one stage of the {@link nl.han.ica.icss.Pipeline}. The events show up on
+ * the timeline of the compiling thread in Mission Control, next to the GC and safepoint events.
+ * <p>
+ * Emit it as {@code begin()}, the stage, {@code end()}, and only fill in the fields and commit
+ * when {@code shouldCommit()}: without a recording that is all the cost there is.
+ */
+@Category("ICSS")
+@StackTrace(false)
+public abstract class StageEvent extends Event {
+
+    @Label("Source")
+    @Description("File the input was read from, null for text from the editor or an API call")
+    public String sourceName;
+
+    @Label("Input Size")
+    @Description("Characters (or bytes, for a saved AST) of the input of the compilation")
+    public long inputSize;
+
+    @Label("Node Count")
+    @Description("Nodes of the AST after parsing, -1 if not known")
+    public long nodeCount;
+
+    @Label("Error Count")
+    @Description("Errors of the compilation after the stage")
+    public int errorCount;
+}
@@ -0,0 +1,15 @@
+package nl.han.ica.icss.events;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("nl.han.ica.icss.Transform")
+@Label("ICSS Transform")
+@Description("Applying a transform to the AST")
+public class TransformEvent extends StageEvent {
+
+    @Label("Transform")
+    @Description("The transform applied, transforms fused into one walk are listed together")
+    public String transform;
+}
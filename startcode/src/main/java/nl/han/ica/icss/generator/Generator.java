@@ -1,11 +1,263 @@
 package nl.han.ica.icss.generator;
 
-import nl.han.ica.icss.ast.AST;
+import nl.han.ica.icss.ast.*;
+import nl.han.ica.icss.ast.literals.*;
+import nl.han.ica.icss.ast.operations.AddOperation;
+import nl.han.ica.icss.ast.operations.MultiplyOperation;
+import nl.han.ica.icss.ast.operations.SubtractOperation;
+import nl.han.ica.icss.ast.selectors.ClassSelector;
+import nl.han.ica.icss.ast.selectors.IdSelector;
+import nl.han.ica.icss.ast.selectors.TagSelector;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 public class Generator {
 
+    //Top-level statements rendered by one task, and the number of statements below which
+    //generating in parallel costs more than it saves
+    private static final int STATEMENTS_PER_CHUNK = 1024;
+    public static final int PARALLEL_THRESHOLD = 16 * STATEMENTS_PER_CHUNK;
+
     public String generate(final AST ast) {
-        // Heb de classes uit de startcode aangepast hiervoor
-        return ast.root.toString();
+        final StringBuilder builder = new StringBuilder();
+        try {
+            generate(ast, builder);
+        } catch (IOException e) {
+            // A StringBuilder never throws
+            throw new UncheckedIOException(e);
+        }
+        return builder.toString();
+    }
+
+    public String generateParallel(final AST ast) {
+        final StringBuilder builder = new StringBuilder();
+        try {
+            generateParallel(ast, builder);
+        } catch (IOException e) {
+            // A StringBuilder never throws
+            throw new UncheckedIOException(e);
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Writes the CSS for the AST straight into the given output in a single walk over the tree,
+     * without building intermediate strings for rules or declarations.
+     *
+     * @param ast the (transformed) AST
+     * @param out the destination, e.g. a buffered Writer on a file or socket
+     * @throws IOException when writing to the destination fails
+     */
+    public void generate(final AST ast, final Appendable out) throws IOException {
+        try {
+            ast.root.accept(new CssWriter(out));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Generates the same CSS as {@link #generate(AST, Appendable)}, but renders chunks of top-level
+     * statements into buffers concurrently on the common fork-join pool. The buffers are written to
+     * the output in source order, as soon as they are done. Only a few chunks per core are rendered
+     * ahead of the output, so a slow output doesn't make the whole stylesheet pile up in memory.
+     * Stylesheets with fewer than {@link #PARALLEL_THRESHOLD} statements are generated sequentially.
+     */
+    public void generateParallel(final AST ast, final Appendable out) throws IOException {
+        final List<ASTNode> statements = ast.root.body;
+        if (statements.size() < PARALLEL_THRESHOLD) {
+            generate(ast, out);
+            return;
+        }
+
+        final int chunks = (statements.size() + STATEMENTS_PER_CHUNK - 1) / STATEMENTS_PER_CHUNK;
+        final int ahead = 2 * ForkJoinPool.getCommonPoolParallelism();
+        final ArrayDeque<ForkJoinTask<StringBuilder>> rendering = new ArrayDeque<>();
+        int forked = 0;
+        try {
+            while (forked < chunks && rendering.size() < ahead) {
+                rendering.add(renderChunk(statements, forked++).fork());
+            }
+            while (!rendering.isEmpty()) {
+                Cancellation.checkInterrupted();
+                out.append(rendering.removeFirst().join());
+                if (forked < chunks) {
+                    rendering.add(renderChunk(statements, forked++).fork());
+                }
+            }
+        } finally {
+            //Only left when writing failed or the thread was interrupted
+            for (final ForkJoinTask<StringBuilder> task : rendering) {
+                task.cancel(false);
+            }
+        }
+    }
+
+    private static ForkJoinTask<StringBuilder> renderChunk(final List<ASTNode> statements, final int chunk) {
+        final int from = chunk * STATEMENTS_PER_CHUNK;
+        final int to = Math.min(from + STATEMENTS_PER_CHUNK, statements.size());
+        return ForkJoinTask.adapt(() -> {
+            final StringBuilder buffer = new StringBuilder();
+            final CssWriter writer = new CssWriter(buffer);
+            for (int i = from; i < to; i++) {
+                statements.get(i).accept(writer);
+            }
+            return buffer;
+        });
+    }
+
+    /**
+     * Writes each node as CSS. Nodes that have no CSS form (expressions that were not evaluated,
+     * if-clauses that were not removed) are written in their debug form.
+     * Visit methods can't throw IOException, so it is tunneled as an UncheckedIOException.
+     */
+    private static class CssWriter extends ASTBaseVisitor<Void> {
+
+        private final Appendable out;
+
+        private CssWriter(final Appendable out) {
+            this.out = out;
+        }
+
+        private void write(final CharSequence text) {
+            try {
+                out.append(text);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private Void writeDebugForm(final ASTNode node) {
+            write(node.toString());
+            return null;
+        }
+
+        @Override
+        public Void visitStylesheet(final Stylesheet node) {
+            for (final ASTNode child : node.body) {
+                Cancellation.checkInterrupted();
+                child.accept(this);
+            }
+            return null;
+        }
+
+        @Override
+        public Void visitStylerule(final Stylerule node) {
+            for (final Selector selector : node.selectors) {
+                selector.accept(this);
+            }
+            write(" {\n");
+
+            for (final ASTNode child : node.body) {
+                //Variables of the rule have no CSS form, not even an indent
+                if (child instanceof VariableAssignment) {
+                    continue;
+                }
+                write("\t");
+                child.accept(this);
+            }
+            write("}\n");
+            return null;
+        }
+
+        @Override
+        public Void visitVariableAssignment(final VariableAssignment node) {
+            return null;
+        }
+
+        @Override
+        public Void visitDeclaration(final Declaration node) {
+            node.property.accept(this);
+            write(" : ");
+            node.expression.accept(this);
+            write(";\n");
+            return null;
+        }
+
+        @Override
+        public Void visitPropertyName(final PropertyName node) {
+            write(node.name);
+            return null;
+        }
+
+        @Override
+        public Void visitIfClause(final IfClause node) {
+            return writeDebugForm(node);
+        }
+
+        @Override
+        public Void visitVariableReference(final VariableReference node) {
+            return writeDebugForm(node);
+        }
+
+        @Override
+        public Void visitAddOperation(final AddOperation node) {
+            return writeDebugForm(node);
+        }
+
+        @Override
+        public Void visitSubtractOperation(final SubtractOperation node) {
+            return writeDebugForm(node);
+        }
+
+        @Override
+        public Void visitMultiplyOperation(final MultiplyOperation node) {
+            return writeDebugForm(node);
+        }
+
+        @Override
+        public Void visitBoolLiteral(final BoolLiteral node) {
+            write(node.value ? "true" : "false");
+            return null;
+        }
+
+        @Override
+        public Void visitColorLiteral(final ColorLiteral node) {
+            write(node.toString());
+            return null;
+        }
+
+        @Override
+        public Void visitPercentageLiteral(final PercentageLiteral node) {
+            write(Integer.toString(node.value));
+            write("%");
+            return null;
+        }
+
+        @Override
+        public Void visitPixelLiteral(final PixelLiteral node) {
+            write(Integer.toString(node.value));
+            write("px");
+            return null;
+        }
+
+        @Override
+        public Void visitScalarLiteral(final ScalarLiteral node) {
+            write(Integer.toString(node.value));
+            return null;
+        }
+
+        @Override
+        public Void visitClassSelector(final ClassSelector node) {
+            write(node.cls);
+            return null;
+        }
+
+        @Override
+        public Void visitIdSelector(final IdSelector node) {
+            write(node.id);
+            return null;
+        }
+
+        @Override
+        public Void visitTagSelector(final TagSelector node) {
+            write(node.tag);
+            return null;
+        }
     }
 }
@@ -48,15 +48,34 @@ public class ASTPane extends BorderPane {
      * @param ast
      */
     public void update(AST ast) {
-        content.setRoot(astNodeToTreeItem(ast.root));
+        setTree(toTree(ast));
     }
-    private TreeItem<ASTNode> astNodeToTreeItem(ASTNode astNode) {
+
+    /**
+     * Shows a tree built earlier with {@link #toTree(AST)}.
+     * @param tree
+     */
+    public void setTree(TreeItem<ASTNode> tree) {
+        content.setRoot(tree);
+    }
+
+    /**
+     * Builds the tree items for an AST. This does not touch the scene graph,
+     * so it may be called from a background thread.
+     * @param ast
+     * @return the root tree item
+     */
+    public static TreeItem<ASTNode> toTree(AST ast) {
+        return astNodeToTreeItem(ast.root);
+    }
+
+    private static TreeItem<ASTNode> astNodeToTreeItem(ASTNode astNode) {
 
         TreeItem<ASTNode> tvNode = new TreeItem<ASTNode>(astNode);
         tvNode.setExpanded(true);
 
-        for(ASTNode child : astNode.getChildren()) {
-            tvNode.getChildren().add(astNodeToTreeItem(child));
+        for(int i = 0; i < astNode.getChildCount(); i++) {
+            tvNode.getChildren().add(astNodeToTreeItem(astNode.getChild(i)));
         }
         return tvNode;
     }
@@ -1,9 +1,18 @@
 package nl.han.ica.icss.gui;
 
+import nl.han.ica.icss.cli.Compile;
+
 import java.io.IOException;
 
 public class Main {
+    /*
+     With arguments this is a scripted compile, see Compile, and JavaFX is never loaded.
+     */
     public static void main(String[] args) throws IOException {
+        if (args.length > 0) {
+            Compile.main(args);
+            return;
+        }
         MainGui.launch(MainGui.class,args);
     }
 }
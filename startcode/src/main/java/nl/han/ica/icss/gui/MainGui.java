@@ -2,9 +2,16 @@ package nl.han.ica.icss.gui;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.Writer;
 import java.net.URL;
 import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 //We use this google library, because it makes life so much easier when
 //reading the examples icss files as packaged resource
@@ -22,6 +29,7 @@ import javafx.scene.layout.HBox;
 import javafx.stage.FileChooser;
 import javafx.stage.Stage;
 import nl.han.ica.icss.Pipeline;
+import nl.han.ica.icss.ast.ASTNode;
 
 @SuppressWarnings("restriction")
 public class MainGui extends Application {
@@ -45,6 +53,15 @@ public class MainGui extends Application {
     //Model
     private Pipeline pipeline;
 
+    //Background compilation, one stage at a time
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "icss-pipeline");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private Future<?> running;
+    private long requests;
+
 
     @Override
     public void start(Stage stage) {
@@ -141,7 +158,19 @@ public class MainGui extends Application {
 
                 File file = fileChooser.showSaveDialog(stage);
                 if (file != null) {
-                    outputPane.writeToFile(file);
+                    if (running != null) {
+                        feedbackPane.addLine("Still compiling, try again when it is done");
+                    } else if (pipeline.isTransformed()) {
+                        //Stream straight from the AST, the output may be too big to keep as text.
+                        //Before transforming, generating gives the raw operations and if-clauses, so save the pane then
+                        try (Writer writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+                            pipeline.generate(writer);
+                        } catch (IOException ioe) {
+                            feedbackPane.addLine(ioe.toString());
+                        }
+                    } else {
+                        outputPane.writeToFile(file);
+                    }
                 }
             }
         });
@@ -186,54 +215,111 @@ public class MainGui extends Application {
 
     private void clear() {
         feedbackPane.clear();
-        pipeline.clearErrors();
     }
 
-    private void parse() {
-        clear();
-        feedbackPane.addLine("Parsing...");
-        pipeline.parseString(inputPane.getText());
-        for(String e : pipeline.getErrors()) {
-            feedbackPane.addLine(e);
+    /*
+     Runs a pipeline stage on the background thread, so the window stays responsive on big inputs.
+     The stage returns the work that updates the panes, which is then run on the JavaFX thread.
+     Starting a new stage cancels the one in flight: a queued stage never runs, a running stage is
+     interrupted and stops at its next statement (see Cancellation), its results are never shown.
+     */
+    private void runStage(String description, Callable<Runnable> stage) {
+        if (running != null) {
+            running.cancel(true);
         }
-        if (pipeline.isParsed()) {
-            feedbackPane.addLine("Parsing succeeded");
-        }
-        astPane.update(pipeline.getAST());
+        final long request = ++requests;
+
+        clear();
+        feedbackPane.addLine(description + "...");
         updateToolbar();
+
+        running = executor.submit(() -> {
+            final long start = System.nanoTime();
+            Runnable publish;
+            try {
+                pipeline.clearErrors();
+                publish = stage.call();
+            } catch (Exception e) {
+                publish = () -> feedbackPane.addLine(e.toString());
+            }
+            if (Thread.currentThread().isInterrupted()) {
+                return;
+            }
+            final long elapsed = (System.nanoTime() - start) / 1_000_000;
+            final Runnable update = publish;
+            final String stats = pipeline.getStats().toString();
+            Platform.runLater(() -> {
+                if (request != requests) {
+                    return;
+                }
+                update.run();
+                feedbackPane.addLine(description + " took " + elapsed + " ms");
+                feedbackPane.addLine(stats);
+                running = null;
+                updateToolbar();
+            });
+        });
+    }
+
+    private void parse() {
+        final String input = inputPane.getText();
+        runStage("Parsing", () -> {
+            pipeline.reparseString(input);
+            final List<String> errors = new ArrayList<>(pipeline.getErrors());
+            final boolean parsed = pipeline.isParsed();
+            final TreeItem<ASTNode> tree = ASTPane.toTree(pipeline.getAST());
+            return () -> {
+                for (String e : errors) {
+                    feedbackPane.addLine(e);
+                }
+                if (parsed) {
+                    feedbackPane.addLine("Parsing succeeded");
+                }
+                astPane.setTree(tree);
+            };
+        });
     }
 
     private void check() {
-        clear();
-        feedbackPane.addLine("Checking...");
-        if (pipeline.check()) {
-            feedbackPane.addLine("AST is ok!");
-        } else {
-            for (String e : pipeline.getErrors()) {
-                feedbackPane.addLine(e);
-            }
-        }
-        astPane.update(pipeline.getAST());
-        updateToolbar();
+        runStage("Checking", () -> {
+            final boolean ok = pipeline.check();
+            final List<String> errors = new ArrayList<>(pipeline.getErrors());
+            final TreeItem<ASTNode> tree = ASTPane.toTree(pipeline.getAST());
+            return () -> {
+                if (ok) {
+                    feedbackPane.addLine("AST is ok!");
+                } else {
+                    for (String e : errors) {
+                        feedbackPane.addLine(e);
+                    }
+                }
+                astPane.setTree(tree);
+            };
+        });
     }
 
     private void transform() {
-       clear();
-       feedbackPane.addLine("Applying transformations...");
-       pipeline.transform();
-       if (pipeline.isTransformed()) {
-           feedbackPane.addLine("Transformation succeeded");
-       }
-       astPane.update(pipeline.getAST());
-       updateToolbar();
+        runStage("Applying transformations", () -> {
+            pipeline.transform();
+            final boolean transformed = pipeline.isTransformed();
+            final TreeItem<ASTNode> tree = ASTPane.toTree(pipeline.getAST());
+            return () -> {
+                if (transformed) {
+                    feedbackPane.addLine("Transformation succeeded");
+                }
+                astPane.setTree(tree);
+            };
+        });
     }
 
     private void generate() {
-        clear();
-        feedbackPane.addLine("Generating output...");
-        outputPane.setText(pipeline.generate());
-        feedbackPane.addLine("Generating succeeded");
-        updateToolbar();
+        runStage("Generating output", () -> {
+            final String css = pipeline.generate();
+            return () -> {
+                outputPane.setText(css);
+                feedbackPane.addLine("Generating succeeded");
+            };
+        });
     }
 
     private void updateToolbar() {
@@ -242,6 +328,10 @@ public class MainGui extends Application {
         transformButton.setDisable(true);
         generateButton.setDisable(true);
 
+        //Later stages need the result of the running one, only a new parse may replace it
+        if (running != null) {
+            return;
+        }
         if (pipeline.isParsed()) {
             checkButton.setDisable(false);
             if (pipeline.isChecked()) {
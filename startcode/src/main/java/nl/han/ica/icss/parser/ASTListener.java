@@ -78,7 +78,7 @@ public class ASTListener extends ICSSBaseListener {
 
     @Override
     public void enterPixelLiteral(final ICSSParser.PixelLiteralContext ctx) {
-        PixelLiteral pixelLiteral = new PixelLiteral(ctx.getText());
+        PixelLiteral pixelLiteral = PixelLiteral.valueOf(ctx.getText());
         currentContainer.peek().addChild(pixelLiteral);
         currentContainer.push(pixelLiteral);
     }
@@ -90,7 +90,7 @@ public class ASTListener extends ICSSBaseListener {
 
     @Override
     public void enterColorLiteral(final ICSSParser.ColorLiteralContext ctx) {
-        ColorLiteral colorLiteral = new ColorLiteral(ctx.getText());
+        ColorLiteral colorLiteral = ColorLiteral.valueOf(ctx.getText());
         currentContainer.peek().addChild(colorLiteral);
         currentContainer.push(colorLiteral);
     }
@@ -102,7 +102,7 @@ public class ASTListener extends ICSSBaseListener {
 
     @Override
     public void enterBoolLiteral(final ICSSParser.BoolLiteralContext ctx) {
-        BoolLiteral boolLiteral = new BoolLiteral(ctx.getText());
+        BoolLiteral boolLiteral = BoolLiteral.valueOf(ctx.getText());
         currentContainer.peek().addChild(boolLiteral);
         currentContainer.push(boolLiteral);
     }
@@ -114,7 +114,7 @@ public class ASTListener extends ICSSBaseListener {
 
     @Override
     public void enterPercentageLiteral(final ICSSParser.PercentageLiteralContext ctx) {
-        PercentageLiteral percentageLiteral = new PercentageLiteral(ctx.getText());
+        PercentageLiteral percentageLiteral = PercentageLiteral.valueOf(ctx.getText());
         currentContainer.peek().addChild(percentageLiteral);
         currentContainer.push(percentageLiteral);
     }
@@ -126,7 +126,7 @@ public class ASTListener extends ICSSBaseListener {
 
     @Override
     public void enterScalarLiteral(final ICSSParser.ScalarLiteralContext ctx) {
-        ScalarLiteral scalarLiteral = new ScalarLiteral(ctx.getText());
+        ScalarLiteral scalarLiteral = ScalarLiteral.valueOf(ctx.getText());
         currentContainer.peek().addChild(scalarLiteral);
         currentContainer.push(scalarLiteral);
     }
@@ -236,7 +236,7 @@ public class ASTListener extends ICSSBaseListener {
     @Override
     public void enterIfClause(final ICSSParser.IfClauseContext ctx) {
         IfClause ifClause = new IfClause();
-        BoolLiteral boolLiteral = new BoolLiteral(ctx.expression().toString());
+        BoolLiteral boolLiteral = BoolLiteral.valueOf(ctx.expression().toString());
         ifClause.addChild(boolLiteral);
         currentContainer.peek().addChild(ifClause);
         currentContainer.push(ifClause);
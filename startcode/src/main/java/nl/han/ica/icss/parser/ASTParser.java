@@ -0,0 +1,273 @@
+package nl.han.ica.icss.parser;
+
+import nl.han.ica.icss.ast.*;
+import nl.han.ica.icss.ast.literals.*;
+import nl.han.ica.icss.ast.operations.AddOperation;
+import nl.han.ica.icss.ast.operations.MultiplyOperation;
+import nl.han.ica.icss.ast.operations.SubtractOperation;
+import nl.han.ica.icss.ast.selectors.ClassSelector;
+import nl.han.ica.icss.ast.selectors.IdSelector;
+import nl.han.ica.icss.ast.selectors.TagSelector;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.misc.ParseCancellationException;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A hand-written recursive-descent parser for the ICSS grammar that builds the AST straight from
+ * the tokens, without an Antlr parse tree or a walk over it. It builds the same AST as
+ * {@link ICSSParser} with {@link ASTListener}.
+ * <p>
+ * Every rule of the grammar needs one token of lookahead. Operations are parsed by precedence
+ * climbing, with the precedence Antlr gives the alternatives of the left-recursive operation rule:
+ * the earlier an alternative, the tighter it binds. So {@code *} binds tighter than {@code +}, and
+ * {@code +} tighter than {@code -}: {@code 1 - 2 + 3} is {@code 1 - (2 + 3)}. All are left-associative.
+ * <p>
+ * There is no error recovery, the first syntax error throws a {@link ParseCancellationException}.
+ * Parse the input with Antlr then to get its error messages. When the thread is interrupted, the
+ * parse stops between statements with a {@link java.util.concurrent.CancellationException}.
+ */
+public class ASTParser {
+
+    private final List<? extends Token> tokens;
+    private int position;
+
+    //Character range of every top-level statement, for IncrementalParser.reset
+    private int[] starts = new int[16];
+    private int[] ends = new int[16];
+    private int statementCount;
+
+    /**
+     * @param tokens all tokens of the input up to and including EOF, as a filled
+     *               {@link org.antlr.v4.runtime.CommonTokenStream} has them
+     */
+    public ASTParser(final List<? extends Token> tokens) {
+        this.tokens = tokens;
+    }
+
+    /**
+     * stylesheet : (variableAssignment | styleRule)+ EOF
+     *
+     * @throws ParseCancellationException on the first syntax error
+     */
+    public AST parse() {
+        final Stylesheet stylesheet = new Stylesheet();
+        do {
+            Cancellation.checkInterrupted();
+            final int start = peek().getStartIndex();
+            stylesheet.addChild(type() == ICSSLexer.CAPITAL_IDENT ? variableAssignment() : styleRule());
+            recordSpan(start, tokens.get(position - 1).getStopIndex() + 1);
+        } while (type() != Token.EOF);
+        return new AST(stylesheet);
+    }
+
+    /**
+     * @return the index of the first character of every top-level statement of the last parse
+     */
+    public int[] getStatementStarts() {
+        return Arrays.copyOf(starts, statementCount);
+    }
+
+    /**
+     * @return the index after the last character of every top-level statement of the last parse
+     */
+    public int[] getStatementEnds() {
+        return Arrays.copyOf(ends, statementCount);
+    }
+
+    private void recordSpan(final int start, final int end) {
+        if (statementCount == starts.length) {
+            starts = Arrays.copyOf(starts, statementCount * 2);
+            ends = Arrays.copyOf(ends, statementCount * 2);
+        }
+        starts[statementCount] = start;
+        ends[statementCount] = end;
+        statementCount++;
+    }
+
+    //variableAssignment : variableReference ASSIGNMENT_OPERATOR literal SEMICOLON
+    private VariableAssignment variableAssignment() {
+        final VariableAssignment assignment = new VariableAssignment();
+        assignment.addChild(new VariableReference(match(ICSSLexer.CAPITAL_IDENT).getText()));
+        match(ICSSLexer.ASSIGNMENT_OPERATOR);
+        assignment.addChild(literal());
+        match(ICSSLexer.SEMICOLON);
+        return assignment;
+    }
+
+    //styleRule : selector body
+    private Stylerule styleRule() {
+        final Stylerule rule = new Stylerule();
+        switch (type()) {
+            case ICSSLexer.LOWER_IDENT:
+                rule.addChild(new TagSelector(next().getText()));
+                break;
+            case ICSSLexer.ID_IDENT:
+                rule.addChild(new IdSelector(next().getText()));
+                break;
+            case ICSSLexer.CLASS_IDENT:
+                rule.addChild(new ClassSelector(next().getText()));
+                break;
+            default:
+                throw error("a selector");
+        }
+        body(rule);
+        return rule;
+    }
+
+    //body : OPEN_BRACE (declaration | ifClause | variableAssignment)+ CLOSE_BRACE
+    private void body(final ASTNode parent) {
+        match(ICSSLexer.OPEN_BRACE);
+        do {
+            switch (type()) {
+                case ICSSLexer.LOWER_IDENT:
+                    parent.addChild(declaration());
+                    break;
+                case ICSSLexer.IF:
+                    parent.addChild(ifClause());
+                    break;
+                case ICSSLexer.CAPITAL_IDENT:
+                    parent.addChild(variableAssignment());
+                    break;
+                default:
+                    throw error("a declaration, if or variable assignment");
+            }
+        } while (type() != ICSSLexer.CLOSE_BRACE);
+        next();
+    }
+
+    //declaration : propertyName COLON expression SEMICOLON
+    private Declaration declaration() {
+        final Declaration declaration = new Declaration();
+        declaration.addChild(new PropertyName(next().getText()));
+        match(ICSSLexer.COLON);
+        declaration.addChild(expression());
+        match(ICSSLexer.SEMICOLON);
+        return declaration;
+    }
+
+    //ifClause : IF BOX_BRACKET_OPEN expression BOX_BRACKET_CLOSE body
+    private IfClause ifClause() {
+        final IfClause ifClause = new IfClause();
+        next();
+        match(ICSSLexer.BOX_BRACKET_OPEN);
+        ifClause.addChild(expression());
+        match(ICSSLexer.BOX_BRACKET_CLOSE);
+        body(ifClause);
+        return ifClause;
+    }
+
+    //expression : value | operation, where only a color can't be part of an operation
+    private Expression expression() {
+        if (type() == ICSSLexer.COLOR) {
+            return ColorLiteral.valueOf(next().getText());
+        }
+        return operation(1);
+    }
+
+    //Parses operands joined by operators that bind at least as tight as minPrecedence
+    private Expression operation(final int minPrecedence) {
+        Expression lhs = operand();
+        int precedence;
+        while ((precedence = precedence(type())) >= minPrecedence) {
+            final Operation operation = operator(next().getType());
+            operation.addChild(lhs);
+            operation.addChild(operation(precedence + 1));
+            lhs = operation;
+        }
+        return lhs;
+    }
+
+    private static int precedence(final int type) {
+        switch (type) {
+            case ICSSLexer.MUL:
+                return 3;
+            case ICSSLexer.PLUS:
+                return 2;
+            case ICSSLexer.MIN:
+                return 1;
+            default:
+                return 0;
+        }
+    }
+
+    private static Operation operator(final int type) {
+        switch (type) {
+            case ICSSLexer.MUL:
+                return new MultiplyOperation();
+            case ICSSLexer.PLUS:
+                return new AddOperation();
+            default:
+                return new SubtractOperation();
+        }
+    }
+
+    //pixelLiteral | percentageLiteral | scalarLiteral | boolLiteral | variableReference
+    private Expression operand() {
+        switch (type()) {
+            case ICSSLexer.PIXELSIZE:
+                return PixelLiteral.valueOf(next().getText());
+            case ICSSLexer.PERCENTAGE:
+                return PercentageLiteral.valueOf(next().getText());
+            case ICSSLexer.SCALAR:
+                return ScalarLiteral.valueOf(next().getText());
+            case ICSSLexer.TRUE:
+            case ICSSLexer.FALSE:
+                return BoolLiteral.valueOf(next().getText());
+            case ICSSLexer.CAPITAL_IDENT:
+                return new VariableReference(next().getText());
+            default:
+                throw error("a value");
+        }
+    }
+
+    //literal : pixelLiteral | colorLiteral | percentageLiteral | scalarLiteral | boolLiteral
+    private Literal literal() {
+        switch (type()) {
+            case ICSSLexer.PIXELSIZE:
+                return PixelLiteral.valueOf(next().getText());
+            case ICSSLexer.COLOR:
+                return ColorLiteral.valueOf(next().getText());
+            case ICSSLexer.PERCENTAGE:
+                return PercentageLiteral.valueOf(next().getText());
+            case ICSSLexer.SCALAR:
+                return ScalarLiteral.valueOf(next().getText());
+            case ICSSLexer.TRUE:
+            case ICSSLexer.FALSE:
+                return BoolLiteral.valueOf(next().getText());
+            default:
+                throw error("a literal");
+        }
+    }
+
+    private Token peek() {
+        return tokens.get(position);
+    }
+
+    private int type() {
+        return tokens.get(position).getType();
+    }
+
+    //EOF is never consumed, so the parser can't run past the end
+    private Token next() {
+        final Token token = tokens.get(position);
+        if (token.getType() != Token.EOF) {
+            position++;
+        }
+        return token;
+    }
+
+    private Token match(final int type) {
+        if (type() != type) {
+            throw error(ICSSLexer.VOCABULARY.getDisplayName(type));
+        }
+        return next();
+    }
+
+    private ParseCancellationException error(final String expected) {
+        final Token token = peek();
+        return new ParseCancellationException("line " + token.getLine() + ":" + token.getCharPositionInLine()
+                + " expected " + expected + " at '" + token.getText() + "'");
+    }
+}
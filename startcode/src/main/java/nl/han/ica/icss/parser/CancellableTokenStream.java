@@ -0,0 +1,34 @@
+package nl.han.ica.icss.parser;
+
+import nl.han.ica.icss.ast.Cancellation;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.TokenSource;
+
+/**
+ * A {@link CommonTokenStream} that stops lexing and parsing when the thread is interrupted: it
+ * throws a {@link java.util.concurrent.CancellationException} every time it fetches more tokens from
+ * the lexer and every {@value #CHECK_INTERVAL} tokens the parser consumes. Antlr's error handling
+ * only catches recognition errors, so the exception ends the parse.
+ */
+public class CancellableTokenStream extends CommonTokenStream {
+
+    private static final int CHECK_INTERVAL = 1024;
+
+    public CancellableTokenStream(final TokenSource tokenSource) {
+        super(tokenSource);
+    }
+
+    @Override
+    protected int fetch(final int n) {
+        Cancellation.checkInterrupted();
+        return super.fetch(n);
+    }
+
+    @Override
+    public void consume() {
+        if ((index() & (CHECK_INTERVAL - 1)) == 0) {
+            Cancellation.checkInterrupted();
+        }
+        super.consume();
+    }
+}
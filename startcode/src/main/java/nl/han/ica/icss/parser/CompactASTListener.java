@@ -0,0 +1,153 @@
+package nl.han.ica.icss.parser;
+
+import nl.han.ica.icss.ast.CompactAST;
+import nl.han.ica.icss.ast.literals.ColorLiteral;
+import org.antlr.v4.runtime.ParserRuleContext;
+
+import java.util.Arrays;
+
+/**
+ * Builds a {@link CompactAST} while the parser runs, so no parse tree is needed.
+ * Register it with {@code parser.addParseListener} and turn off {@code setBuildParseTree}.
+ *
+ * Nodes are added when their rule exits, with the nodes added since the rule was entered as children.
+ * Rules that have no node of their own (body, value, ...) leave their children for the enclosing rule.
+ */
+public class CompactASTListener extends ICSSBaseListener {
+
+    private final CompactAST.Builder builder = new CompactAST.Builder();
+
+    //Builder mark at the start of every open rule
+    private int[] marks = new int[64];
+    private int depth;
+    private int lastExitMark;
+
+    public CompactAST getCompactAST() {
+        return builder.build();
+    }
+
+    @Override
+    public void enterEveryRule(final ParserRuleContext ctx) {
+        //A new stylesheet means the parser started over, e.g. the full LL pass of a two-stage parse
+        if (ctx instanceof ICSSParser.StylesheetContext) {
+            builder.reset();
+            depth = 0;
+        }
+        if (depth == marks.length) {
+            marks = Arrays.copyOf(marks, depth * 2);
+        }
+        //The parser only enters an operation after its left operand was parsed and exited,
+        //so the operation's children start where that operand's did
+        if (ctx instanceof ICSSParser.MultiplyOperationContext || ctx instanceof ICSSParser.AddOperationContext
+                || ctx instanceof ICSSParser.SubtractOperationContext) {
+            marks[depth++] = lastExitMark;
+        } else {
+            marks[depth++] = builder.mark();
+        }
+    }
+
+    @Override
+    public void exitEveryRule(final ParserRuleContext ctx) {
+        lastExitMark = marks[--depth];
+    }
+
+    private void add(final byte kind, final int value) {
+        builder.add(kind, value, marks[depth - 1]);
+    }
+
+    private void add(final byte kind, final String text) {
+        add(kind, builder.string(text));
+    }
+
+    @Override
+    public void exitStylesheet(final ICSSParser.StylesheetContext ctx) {
+        add(CompactAST.STYLESHEET, 0);
+    }
+
+    @Override
+    public void exitStyleRule(final ICSSParser.StyleRuleContext ctx) {
+        add(CompactAST.STYLERULE, 0);
+    }
+
+    @Override
+    public void exitVariableAssignment(final ICSSParser.VariableAssignmentContext ctx) {
+        add(CompactAST.VARIABLE_ASSIGNMENT, 0);
+    }
+
+    @Override
+    public void exitVariableReference(final ICSSParser.VariableReferenceContext ctx) {
+        add(CompactAST.VARIABLE_REFERENCE, ctx.getText());
+    }
+
+    @Override
+    public void exitPixelLiteral(final ICSSParser.PixelLiteralContext ctx) {
+        final String text = ctx.getText();
+        add(CompactAST.PIXEL_LITERAL, Integer.parseInt(text.substring(0, text.length() - 2)));
+    }
+
+    @Override
+    public void exitColorLiteral(final ICSSParser.ColorLiteralContext ctx) {
+        add(CompactAST.COLOR_LITERAL, ColorLiteral.parse(ctx.getText()));
+    }
+
+    @Override
+    public void exitBoolLiteral(final ICSSParser.BoolLiteralContext ctx) {
+        add(CompactAST.BOOL_LITERAL, ctx.getText().equals("TRUE") ? 1 : 0);
+    }
+
+    @Override
+    public void exitPercentageLiteral(final ICSSParser.PercentageLiteralContext ctx) {
+        final String text = ctx.getText();
+        add(CompactAST.PERCENTAGE_LITERAL, Integer.parseInt(text.substring(0, text.length() - 1)));
+    }
+
+    @Override
+    public void exitScalarLiteral(final ICSSParser.ScalarLiteralContext ctx) {
+        add(CompactAST.SCALAR_LITERAL, Integer.parseInt(ctx.getText()));
+    }
+
+    @Override
+    public void exitMultiplyOperation(final ICSSParser.MultiplyOperationContext ctx) {
+        add(CompactAST.MULTIPLY_OPERATION, 0);
+    }
+
+    @Override
+    public void exitAddOperation(final ICSSParser.AddOperationContext ctx) {
+        add(CompactAST.ADD_OPERATION, 0);
+    }
+
+    @Override
+    public void exitSubtractOperation(final ICSSParser.SubtractOperationContext ctx) {
+        add(CompactAST.SUBTRACT_OPERATION, 0);
+    }
+
+    @Override
+    public void exitDeclaration(final ICSSParser.DeclarationContext ctx) {
+        add(CompactAST.DECLARATION, 0);
+    }
+
+    @Override
+    public void exitPropertyName(final ICSSParser.PropertyNameContext ctx) {
+        add(CompactAST.PROPERTY_NAME, ctx.getText());
+    }
+
+    @Override
+    public void exitTagSelector(final ICSSParser.TagSelectorContext ctx) {
+        add(CompactAST.TAG_SELECTOR, ctx.getText());
+    }
+
+    @Override
+    public void exitIdSelector(final ICSSParser.IdSelectorContext ctx) {
+        add(CompactAST.ID_SELECTOR, ctx.getText());
+    }
+
+    @Override
+    public void exitClassSelector(final ICSSParser.ClassSelectorContext ctx) {
+        add(CompactAST.CLASS_SELECTOR, ctx.getText());
+    }
+
+    @Override
+    public void exitIfClause(final ICSSParser.IfClauseContext ctx) {
+        add(CompactAST.IF_CLAUSE, 0);
+    }
+}
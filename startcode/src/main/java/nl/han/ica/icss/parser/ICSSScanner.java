@@ -0,0 +1,346 @@
+package nl.han.ica.icss.parser;
+
+import org.antlr.v4.runtime.Token;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A hand-written lexer for ICSS that recognizes the same tokens as the generated {@link ICSSLexer}.
+ * It scans a char array or an ASCII byte buffer with a state table: every character is mapped to a
+ * character class, and a transition table gives the next state for every state and class.
+ * <p>
+ * Like the generated lexer it takes the longest match and remembers the last accepting state, so
+ * {@code 12pt} is the scalar {@code 12} followed by {@code pt}, and when two token rules match the
+ * same text the first one in the grammar wins: {@code #abcdef} is a color, {@code #abcdefa} an id.
+ * Keywords are recognized after the identifier they look like is scanned. A character that no
+ * token starts with is an {@link #ERROR} token that covers the characters up to and including the
+ * one that failed, which is exactly the text Antlr skips and reports. Whitespace is skipped.
+ * <p>
+ * Use {@link ScannerTokenSource} to feed the tokens to {@link ICSSParser}.
+ */
+public class ICSSScanner {
+
+    /**
+     * Token type of characters that don't form a token.
+     */
+    public static final int ERROR = -2;
+
+    //Character classes
+    private static final int OTHER = 0;
+    private static final int DIGIT = 1;
+    private static final int HEX_LETTER = 2;
+    private static final int LETTER_P = 3;
+    private static final int LETTER_X = 4;
+    private static final int LOWER = 5;
+    private static final int UPPER = 6;
+    private static final int UNDERSCORE = 7;
+    private static final int MINUS = 8;
+    private static final int HASH = 9;
+    private static final int DOT = 10;
+    private static final int SPACE = 11;
+    private static final int COLON = 12;
+    private static final int EQUALS = 13;
+    private static final int PERCENT = 14;
+    private static final int OPEN_BRACE = 15;
+    private static final int CLOSE_BRACE = 16;
+    private static final int OPEN_BRACKET = 17;
+    private static final int CLOSE_BRACKET = 18;
+    private static final int SEMICOLON = 19;
+    private static final int PLUS = 20;
+    private static final int STAR = 21;
+    private static final int CLASSES = 22;
+
+    //States, 0 is the start state and nothing goes back to it
+    private static final int DEAD = 0;
+    private static final int START = 0;
+    private static final int NUMBER = 1;
+    private static final int NUMBER_P = 2;
+    private static final int PIXELS = 3;
+    private static final int PERCENTAGE = 4;
+    private static final int HASH_SIGN = 5;
+    //HEX_1 + n - 1 after n hex digits, the sixth makes a color
+    private static final int HEX_1 = 6;
+    private static final int HEX_6 = 11;
+    private static final int ID = 12;
+    private static final int DOT_SIGN = 13;
+    private static final int CLASS = 14;
+    private static final int LOWER_IDENT = 15;
+    private static final int CAPITAL_IDENT = 16;
+    private static final int WHITESPACE = 17;
+    private static final int COLON_SIGN = 18;
+    private static final int ASSIGNMENT = 19;
+    private static final int SINGLE = 20;
+    private static final int STATES = SINGLE + CLASSES;
+
+    private static final byte[] CLASS_OF = new byte[128];
+    private static final byte[] NEXT = new byte[STATES * CLASSES];
+    //Token type of every accepting state, 0 for the others
+    private static final byte[] ACCEPT = new byte[STATES];
+
+    static {
+        for (char c = '0'; c <= '9'; c++) {
+            CLASS_OF[c] = DIGIT;
+        }
+        for (char c = 'a'; c <= 'z'; c++) {
+            CLASS_OF[c] = (byte) (c <= 'f' ? HEX_LETTER : LOWER);
+        }
+        for (char c = 'A'; c <= 'Z'; c++) {
+            CLASS_OF[c] = UPPER;
+        }
+        CLASS_OF['p'] = LETTER_P;
+        CLASS_OF['x'] = LETTER_X;
+        CLASS_OF['_'] = UNDERSCORE;
+        CLASS_OF['-'] = MINUS;
+        CLASS_OF['#'] = HASH;
+        CLASS_OF['.'] = DOT;
+        CLASS_OF[' '] = CLASS_OF['\t'] = CLASS_OF['\r'] = CLASS_OF['\n'] = SPACE;
+        CLASS_OF[':'] = COLON;
+        CLASS_OF['='] = EQUALS;
+        CLASS_OF['%'] = PERCENT;
+        CLASS_OF['{'] = OPEN_BRACE;
+        CLASS_OF['}'] = CLOSE_BRACE;
+        CLASS_OF['['] = OPEN_BRACKET;
+        CLASS_OF[']'] = CLOSE_BRACKET;
+        CLASS_OF[';'] = SEMICOLON;
+        CLASS_OF['+'] = PLUS;
+        CLASS_OF['*'] = STAR;
+
+        final int[] lowerIdent = {DIGIT, HEX_LETTER, LETTER_P, LETTER_X, LOWER, MINUS};
+        final int[] capitalIdent = {DIGIT, HEX_LETTER, LETTER_P, LETTER_X, LOWER, UPPER, UNDERSCORE};
+        final int[] nonHex = {LETTER_P, LETTER_X, LOWER, MINUS};
+
+        //PIXELSIZE, PERCENTAGE and SCALAR
+        edges(START, NUMBER, DIGIT);
+        edges(NUMBER, NUMBER, DIGIT);
+        edges(NUMBER, NUMBER_P, LETTER_P);
+        edges(NUMBER_P, PIXELS, LETTER_X);
+        edges(NUMBER, PERCENTAGE, PERCENT);
+        accept(NUMBER, ICSSLexer.SCALAR);
+        accept(PIXELS, ICSSLexer.PIXELSIZE);
+        accept(PERCENTAGE, ICSSLexer.PERCENTAGE);
+
+        //COLOR and ID_IDENT
+        edges(START, HASH_SIGN, HASH);
+        edges(HASH_SIGN, HEX_1, DIGIT, HEX_LETTER);
+        edges(HASH_SIGN, ID, nonHex);
+        for (int state = HEX_1; state < HEX_6; state++) {
+            edges(state, state + 1, DIGIT, HEX_LETTER);
+            edges(state, ID, nonHex);
+            accept(state, ICSSLexer.ID_IDENT);
+        }
+        edges(HEX_6, ID, lowerIdent);
+        accept(HEX_6, ICSSLexer.COLOR);
+        edges(ID, ID, lowerIdent);
+        accept(ID, ICSSLexer.ID_IDENT);
+
+        //CLASS_IDENT
+        edges(START, DOT_SIGN, DOT);
+        edges(DOT_SIGN, CLASS, lowerIdent);
+        edges(CLASS, CLASS, lowerIdent);
+        accept(CLASS, ICSSLexer.CLASS_IDENT);
+
+        //LOWER_IDENT and IF, CAPITAL_IDENT, TRUE and FALSE
+        edges(START, LOWER_IDENT, HEX_LETTER, LETTER_P, LETTER_X, LOWER);
+        edges(LOWER_IDENT, LOWER_IDENT, lowerIdent);
+        accept(LOWER_IDENT, ICSSLexer.LOWER_IDENT);
+        edges(START, CAPITAL_IDENT, UPPER);
+        edges(CAPITAL_IDENT, CAPITAL_IDENT, capitalIdent);
+        accept(CAPITAL_IDENT, ICSSLexer.CAPITAL_IDENT);
+
+        edges(START, WHITESPACE, SPACE);
+        edges(WHITESPACE, WHITESPACE, SPACE);
+        accept(WHITESPACE, ICSSLexer.WS);
+
+        edges(START, COLON_SIGN, COLON);
+        edges(COLON_SIGN, ASSIGNMENT, EQUALS);
+        accept(COLON_SIGN, ICSSLexer.COLON);
+        accept(ASSIGNMENT, ICSSLexer.ASSIGNMENT_OPERATOR);
+
+        //Tokens of one character get a state of their own
+        single(OPEN_BRACE, ICSSLexer.OPEN_BRACE);
+        single(CLOSE_BRACE, ICSSLexer.CLOSE_BRACE);
+        single(OPEN_BRACKET, ICSSLexer.BOX_BRACKET_OPEN);
+        single(CLOSE_BRACKET, ICSSLexer.BOX_BRACKET_CLOSE);
+        single(SEMICOLON, ICSSLexer.SEMICOLON);
+        single(PLUS, ICSSLexer.PLUS);
+        single(MINUS, ICSSLexer.MIN);
+        single(STAR, ICSSLexer.MUL);
+    }
+
+    private static void edges(final int from, final int to, final int... classes) {
+        for (final int c : classes) {
+            NEXT[from * CLASSES + c] = (byte) to;
+        }
+    }
+
+    private static void accept(final int state, final int type) {
+        ACCEPT[state] = (byte) type;
+    }
+
+    private static void single(final int c, final int type) {
+        edges(START, SINGLE + c, c);
+        accept(SINGLE + c, type);
+    }
+
+    //One of the two is null
+    private final char[] chars;
+    private final ByteBuffer bytes;
+    private final int length;
+
+    private int position;
+    private int line = 1;
+    private int column;
+
+    private int tokenStart;
+    private int tokenStop;
+    private int tokenLine;
+    private int tokenColumn;
+
+    /**
+     * Scans the characters, characters outside the ASCII range are never part of a token.
+     */
+    public ICSSScanner(final char[] chars) {
+        this(chars, null, chars.length);
+    }
+
+    /**
+     * Scans the bytes between position and limit as ASCII.
+     */
+    public ICSSScanner(final ByteBuffer bytes) {
+        this(null, bytes.slice(), bytes.remaining());
+    }
+
+    private ICSSScanner(final char[] chars, final ByteBuffer bytes, final int length) {
+        this.chars = chars;
+        this.bytes = bytes;
+        this.length = length;
+    }
+
+    /**
+     * Scans the next token.
+     *
+     * @return the token type from {@link ICSSLexer}, {@link Token#EOF} at the end or {@link #ERROR}
+     */
+    public int nextToken() {
+        while (true) {
+            tokenStart = position;
+            tokenLine = line;
+            tokenColumn = column;
+            if (position >= length) {
+                tokenStop = position - 1;
+                return Token.EOF;
+            }
+
+            int state = START;
+            int index = position;
+            int type = 0;
+            int end = -1;
+            while (index < length) {
+                final int c = chars != null ? chars[index] : bytes.get(index);
+                state = NEXT[state * CLASSES + (c >= 0 && c < 128 ? CLASS_OF[c] : OTHER)];
+                if (state == DEAD) {
+                    break;
+                }
+                index++;
+                if (ACCEPT[state] != 0) {
+                    type = ACCEPT[state];
+                    end = index;
+                }
+            }
+
+            if (end < 0) {
+                //Antlr reports and skips everything up to and including the failing character
+                tokenStop = Math.min(index, length - 1);
+                advance(Math.min(index + 1, length));
+                return ERROR;
+            }
+            tokenStop = end - 1;
+            if (type == ICSSLexer.WS) {
+                advance(end);
+                continue;
+            }
+            //Only whitespace and errors can span lines
+            column += end - position;
+            position = end;
+            return keyword(type);
+        }
+    }
+
+    private void advance(final int end) {
+        for (; position < end; position++) {
+            if (charAt(position) == '\n') {
+                line++;
+                column = 0;
+            } else {
+                column++;
+            }
+        }
+    }
+
+    private int keyword(final int type) {
+        final int tokenLength = tokenStop - tokenStart + 1;
+        if (type == ICSSLexer.LOWER_IDENT && tokenLength == 2) {
+            return matches("if") ? ICSSLexer.IF : type;
+        } else if (type == ICSSLexer.CAPITAL_IDENT && tokenLength == 4) {
+            return matches("TRUE") ? ICSSLexer.TRUE : type;
+        } else if (type == ICSSLexer.CAPITAL_IDENT && tokenLength == 5) {
+            return matches("FALSE") ? ICSSLexer.FALSE : type;
+        }
+        return type;
+    }
+
+    private boolean matches(final String keyword) {
+        for (int i = 0; i < keyword.length(); i++) {
+            if (charAt(tokenStart + i) != keyword.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int charAt(final int index) {
+        return chars != null ? chars[index] : bytes.get(index);
+    }
+
+    /**
+     * @return the index of the first character of the last token
+     */
+    public int getTokenStart() {
+        return tokenStart;
+    }
+
+    /**
+     * @return the index of the last character of the last token, one before the start at the end
+     */
+    public int getTokenStop() {
+        return tokenStop;
+    }
+
+    /**
+     * @return the line of the last token, starting at 1
+     */
+    public int getTokenLine() {
+        return tokenLine;
+    }
+
+    /**
+     * @return the column of the last token, starting at 0
+     */
+    public int getTokenColumn() {
+        return tokenColumn;
+    }
+
+    /**
+     * @return the line of the next character to scan
+     */
+    public int getLine() {
+        return line;
+    }
+
+    /**
+     * @return the column of the next character to scan
+     */
+    public int getColumn() {
+        return column;
+    }
+}
@@ -0,0 +1,204 @@
+package nl.han.ica.icss.parser;
+
+import nl.han.ica.icss.ast.ASTNode;
+import nl.han.ica.icss.ast.Stylesheet;
+import org.antlr.v4.runtime.*;
+import org.antlr.v4.runtime.atn.PredictionMode;
+import org.antlr.v4.runtime.misc.ParseCancellationException;
+import org.antlr.v4.runtime.tree.ParseTree;
+import org.antlr.v4.runtime.tree.ParseTreeWalker;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Re-parses a changed text at the granularity of top-level statements (variable assignments and
+ * style rules). It remembers where every statement of the previous successful parse starts and
+ * ends, re-parses only the statements that overlap the edited range and reuses the others as is.
+ * <p>
+ * Statements only touch each other through whitespace or their final ';' or '}', so a range of
+ * whole statements lexes and parses the same on its own as it does as part of the full text.
+ */
+public class IncrementalParser {
+
+    private String text;
+    private ArrayList<ASTNode> statements;
+    private int[] starts;
+    private int[] ends;
+
+    private int reusedCount;
+
+    /**
+     * Remembers the result of a successful full parse of the given text.
+     */
+    public void reset(final String text, final ICSSParser.StylesheetContext tree, final Stylesheet stylesheet) {
+        final int[] starts = new int[stylesheet.body.size()];
+        final int[] ends = new int[stylesheet.body.size()];
+        if (recordSpans(tree, 0, starts, ends) != starts.length) {
+            invalidate();
+        } else {
+            reset(text, stylesheet, starts, ends);
+        }
+    }
+
+    /**
+     * Remembers the result of a successful full parse of the given text, with the character
+     * range of every top-level statement, e.g. from {@link ASTParser}.
+     */
+    public void reset(final String text, final Stylesheet stylesheet, final int[] starts, final int[] ends) {
+        this.text = text;
+        this.statements = new ArrayList<>(stylesheet.body);
+        this.starts = starts;
+        this.ends = ends;
+    }
+
+    /**
+     * Forgets the previous parse, e.g. because its AST has been transformed.
+     */
+    public void invalidate() {
+        text = null;
+        statements = null;
+        starts = ends = null;
+    }
+
+    /**
+     * Number of statements reused by the last successful {@link #reparse(String)}.
+     */
+    public int getReusedCount() {
+        return reusedCount;
+    }
+
+    /**
+     * Builds a stylesheet for the new text, reusing the statements of the previous parse
+     * outside the edited range.
+     *
+     * @return the new stylesheet, or null when a full parse is needed: there is no previous
+     * parse, or the edited range does not parse on its own (e.g. it has syntax errors)
+     */
+    public Stylesheet reparse(final String newText) {
+        if (text == null) {
+            return null;
+        }
+        final int oldLength = text.length();
+        final int newLength = newText.length();
+
+        //The edited range is what remains after stripping the common prefix and suffix
+        final int maxCommon = Math.min(oldLength, newLength);
+        int prefix = 0;
+        while (prefix < maxCommon && text.charAt(prefix) == newText.charAt(prefix)) {
+            prefix++;
+        }
+        int suffix = 0;
+        while (suffix < maxCommon - prefix
+                && text.charAt(oldLength - 1 - suffix) == newText.charAt(newLength - 1 - suffix)) {
+            suffix++;
+        }
+        final int editStart = prefix;
+        final int editEnd = oldLength - suffix;
+        final int delta = newLength - oldLength;
+
+        //Statements that overlap or touch the edited range: first..last
+        final int count = statements.size();
+        int first = 0;
+        while (first < count && ends[first] < editStart) {
+            first++;
+        }
+        int last = count - 1;
+        while (last >= first && starts[last] > editEnd) {
+            last--;
+        }
+        final int regionStart = first <= last ? Math.min(starts[first], editStart) : editStart;
+        final int regionEnd = (first <= last ? Math.max(ends[last], editEnd) : editEnd) + delta;
+
+        final String region = newText.substring(regionStart, regionEnd);
+        final ArrayList<ASTNode> parsed = new ArrayList<>();
+        int[] parsedStarts = new int[0];
+        int[] parsedEnds = new int[0];
+        if (!region.isBlank()) {
+            final ICSSParser.StylesheetContext tree = parseRegion(region);
+            if (tree == null) {
+                return null;
+            }
+            final ASTListener listener = new ASTListener();
+            new ParseTreeWalker().walk(listener, tree);
+            parsed.addAll(listener.getAST().root.body);
+            parsedStarts = new int[parsed.size()];
+            parsedEnds = new int[parsed.size()];
+            recordSpans(tree, regionStart, parsedStarts, parsedEnds);
+        }
+
+        //Stitch together: unchanged head, re-parsed region, unchanged (shifted) tail
+        final int tail = count - (last + 1);
+        final int newCount = first + parsed.size() + tail;
+        final ArrayList<ASTNode> newStatements = new ArrayList<>(newCount);
+        final int[] newStarts = Arrays.copyOf(starts, newCount);
+        final int[] newEnds = Arrays.copyOf(ends, newCount);
+
+        newStatements.addAll(statements.subList(0, first));
+        newStatements.addAll(parsed);
+        newStatements.addAll(statements.subList(last + 1, count));
+        System.arraycopy(parsedStarts, 0, newStarts, first, parsed.size());
+        System.arraycopy(parsedEnds, 0, newEnds, first, parsed.size());
+        for (int i = 0; i < tail; i++) {
+            newStarts[first + parsed.size() + i] = starts[last + 1 + i] + delta;
+            newEnds[first + parsed.size() + i] = ends[last + 1 + i] + delta;
+        }
+
+        text = newText;
+        statements = newStatements;
+        starts = newStarts;
+        ends = newEnds;
+        reusedCount = first + tail;
+
+        return new Stylesheet(new ArrayList<>(newStatements));
+    }
+
+    /**
+     * Parses a range of statements, giving up (null) on the first lexer or parser error.
+     */
+    private ICSSParser.StylesheetContext parseRegion(final String region) {
+        final ICSSLexer lexer = new ICSSLexer(CharStreams.fromString(region));
+        lexer.removeErrorListeners();
+        final boolean[] failed = {false};
+        lexer.addErrorListener(new BaseErrorListener() {
+            @Override
+            public void syntaxError(Recognizer<?, ?> recognizer, Object offendingSymbol, int line,
+                                    int charPositionInLine, String msg, RecognitionException e) {
+                failed[0] = true;
+            }
+        });
+
+        final ICSSParser parser = new ICSSParser(new CommonTokenStream(lexer));
+        parser.removeErrorListeners();
+        parser.setErrorHandler(new BailErrorStrategy());
+        parser.getInterpreter().setPredictionMode(PredictionMode.SLL);
+        try {
+            final ICSSParser.StylesheetContext tree = parser.stylesheet();
+            return failed[0] ? null : tree;
+        } catch (ParseCancellationException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Stores the character range of every top-level statement of the tree, shifted by offset.
+     *
+     * @return the number of statements
+     */
+    private static int recordSpans(final ICSSParser.StylesheetContext tree, final int offset,
+                                   final int[] starts, final int[] ends) {
+        int index = 0;
+        for (int i = 0; i < tree.getChildCount(); i++) {
+            final ParseTree child = tree.getChild(i);
+            if (child instanceof ICSSParser.VariableAssignmentContext || child instanceof ICSSParser.StyleRuleContext) {
+                final ParserRuleContext statement = (ParserRuleContext) child;
+                if (index < starts.length) {
+                    starts[index] = offset + statement.getStart().getStartIndex();
+                    ends[index] = offset + statement.getStop().getStopIndex() + 1;
+                }
+                index++;
+            }
+        }
+        return index;
+    }
+}
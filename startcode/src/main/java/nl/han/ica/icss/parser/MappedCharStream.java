@@ -0,0 +1,145 @@
+package nl.han.ica.icss.parser;
+
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.IntStream;
+import org.antlr.v4.runtime.misc.Interval;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A CharStream that reads an ASCII file straight from a memory-mapped buffer, one byte per character.
+ * The lexer gets its input without the file ever being copied into a String or a code point array,
+ * only the text of the tokens is.
+ *
+ * Use {@link #fromPath(Path)}, it falls back to a regular CharStream for files that are not ASCII.
+ */
+public class MappedCharStream implements CharStream {
+
+    private static final long NON_ASCII = 0x8080808080808080L;
+
+    private final ByteBuffer buffer;
+    private final int size;
+    private final String sourceName;
+    private int position;
+
+    private MappedCharStream(final ByteBuffer buffer, final String sourceName) {
+        this.buffer = buffer;
+        this.size = buffer.limit();
+        this.sourceName = sourceName;
+    }
+
+    /**
+     * Maps the file when it is ASCII, otherwise reads it as UTF-8 with {@link CharStreams#fromPath}.
+     */
+    public static CharStream fromPath(final Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            final long length = channel.size();
+            if (length <= Integer.MAX_VALUE) {
+                //The mapping stays valid after the channel is closed
+                final ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+                if (isAscii(buffer)) {
+                    return new MappedCharStream(buffer, path.toString());
+                }
+            }
+        }
+        return CharStreams.fromPath(path, StandardCharsets.UTF_8);
+    }
+
+    private static boolean isAscii(final ByteBuffer buffer) {
+        final int limit = buffer.limit();
+        int i = 0;
+        for (; i + Long.BYTES <= limit; i += Long.BYTES) {
+            if ((buffer.getLong(i) & NON_ASCII) != 0) {
+                return false;
+            }
+        }
+        for (; i < limit; i++) {
+            if (buffer.get(i) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    //For ICSSScanner, which reads the bytes itself
+    ByteBuffer buffer() {
+        return buffer;
+    }
+
+    @Override
+    public void consume() {
+        if (position >= size) {
+            throw new IllegalStateException("cannot consume EOF");
+        }
+        position++;
+    }
+
+    @Override
+    public int LA(final int i) {
+        final int offset;
+        if (i > 0) {
+            offset = position + i - 1;
+        } else if (i < 0) {
+            offset = position + i;
+        } else {
+            return 0;
+        }
+        if (offset < 0 || offset >= size) {
+            return IntStream.EOF;
+        }
+        return buffer.get(offset) & 0xff;
+    }
+
+    //The whole file is always available, so marks don't have to hold anything
+    @Override
+    public int mark() {
+        return -1;
+    }
+
+    @Override
+    public void release(final int marker) {
+    }
+
+    @Override
+    public int index() {
+        return position;
+    }
+
+    @Override
+    public void seek(final int index) {
+        position = Math.min(index, size);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public String getSourceName() {
+        return sourceName;
+    }
+
+    @Override
+    public String getText(final Interval interval) {
+        final int start = Math.min(interval.a, size);
+        final int length = Math.min(interval.b - interval.a + 1, size - start);
+        if (length <= 0) {
+            return "";
+        }
+        final byte[] bytes = new byte[length];
+        buffer.get(start, bytes);
+        return new String(bytes, StandardCharsets.ISO_8859_1);
+    }
+
+    @Override
+    public String toString() {
+        return getText(Interval.of(0, size - 1));
+    }
+}
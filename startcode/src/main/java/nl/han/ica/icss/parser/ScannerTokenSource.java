@@ -0,0 +1,129 @@
+package nl.han.ica.icss.parser;
+
+import org.antlr.v4.runtime.ANTLRErrorListener;
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.CommonTokenFactory;
+import org.antlr.v4.runtime.ConsoleErrorListener;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.TokenFactory;
+import org.antlr.v4.runtime.TokenSource;
+import org.antlr.v4.runtime.misc.Interval;
+import org.antlr.v4.runtime.misc.Pair;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Feeds the tokens of an {@link ICSSScanner} to Antlr, as a drop-in for {@link ICSSLexer}: the
+ * tokens have the same types, positions and text, and characters that don't form a token are
+ * reported to the error listeners with the same message and skipped.
+ * <p>
+ * A memory-mapped {@link MappedCharStream} is scanned in place, any other stream is copied into a
+ * char array first. The text of a token is taken from the stream when it is asked for.
+ */
+public class ScannerTokenSource implements TokenSource {
+
+    private final CharStream input;
+    private final ICSSScanner scanner;
+    private final Pair<TokenSource, CharStream> source;
+    private TokenFactory<?> factory = CommonTokenFactory.DEFAULT;
+    private final List<ANTLRErrorListener> listeners = new ArrayList<>();
+
+    /**
+     * Scans the stream from the start.
+     */
+    public ScannerTokenSource(final CharStream input) {
+        this.input = input;
+        this.scanner = input instanceof MappedCharStream
+                ? new ICSSScanner(((MappedCharStream) input).buffer())
+                : new ICSSScanner(chars(input));
+        this.source = new Pair<>(this, input);
+        listeners.add(ConsoleErrorListener.INSTANCE);
+    }
+
+    private static char[] chars(final CharStream input) {
+        final String text = input.getText(Interval.of(0, input.size() - 1));
+        if (text.length() == input.size()) {
+            return text.toCharArray();
+        }
+        //Keep one char per code point so the indices match the stream, the scanner only looks at ASCII
+        final char[] chars = new char[input.size()];
+        final int[] index = {0};
+        text.codePoints().forEach(c -> chars[index[0]++] = c > Character.MAX_VALUE ? Character.MAX_VALUE : (char) c);
+        return chars;
+    }
+
+    public void addErrorListener(final ANTLRErrorListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeErrorListeners() {
+        listeners.clear();
+    }
+
+    @Override
+    public Token nextToken() {
+        int type;
+        while ((type = scanner.nextToken()) == ICSSScanner.ERROR) {
+            final String text = input.getText(Interval.of(scanner.getTokenStart(), scanner.getTokenStop()));
+            final String message = "token recognition error at: '" + errorDisplay(text) + "'";
+            for (final ANTLRErrorListener listener : listeners) {
+                listener.syntaxError(null, null, scanner.getTokenLine(), scanner.getTokenColumn(), message, null);
+            }
+        }
+        return factory.create(source, type, null, Token.DEFAULT_CHANNEL,
+                scanner.getTokenStart(), scanner.getTokenStop(), scanner.getTokenLine(), scanner.getTokenColumn());
+    }
+
+    //Same as Lexer.getErrorDisplay
+    private static String errorDisplay(final String text) {
+        final StringBuilder display = new StringBuilder();
+        for (int i = 0; i < text.length(); i++) {
+            final char c = text.charAt(i);
+            switch (c) {
+                case '\n':
+                    display.append("\\n");
+                    break;
+                case '\t':
+                    display.append("\\t");
+                    break;
+                case '\r':
+                    display.append("\\r");
+                    break;
+                default:
+                    display.append(c);
+            }
+        }
+        return display.toString();
+    }
+
+    @Override
+    public int getLine() {
+        return scanner.getLine();
+    }
+
+    @Override
+    public int getCharPositionInLine() {
+        return scanner.getColumn();
+    }
+
+    @Override
+    public CharStream getInputStream() {
+        return input;
+    }
+
+    @Override
+    public String getSourceName() {
+        return input.getSourceName();
+    }
+
+    @Override
+    public void setTokenFactory(final TokenFactory<?> factory) {
+        this.factory = factory;
+    }
+
+    @Override
+    public TokenFactory<?> getTokenFactory() {
+        return factory;
+    }
+}
@@ -1,165 +1,196 @@
 package nl.han.ica.icss.transforms;
 
 import nl.han.ica.icss.ast.*;
+import nl.han.ica.icss.checker.VariableResolver;
 import nl.han.ica.icss.ast.literals.*;
 import nl.han.ica.icss.ast.operations.AddOperation;
 import nl.han.ica.icss.ast.operations.MultiplyOperation;
 import nl.han.ica.icss.ast.operations.SubtractOperation;
+import nl.han.ica.icss.ast.types.ExpressionType;
+import nl.han.ica.icss.ast.types.ExpressionTypeVisitor;
 
-import java.util.HashMap;
-import java.util.LinkedList;
+public class EvalExpressions extends ASTBaseVisitor<Void> implements NodeTransform {
 
-public class EvalExpressions implements Transform {
+    //Values of the variables by slot, see VariableResolver
+    private Literal[] variableValues;
 
-    private LinkedList<HashMap<String, Literal>> variableValues;
+    private final Evaluator evaluator = new Evaluator();
 
-    public EvalExpressions() {
-        variableValues = new LinkedList<>();
+    @Override
+    public void begin(final AST ast) {
+        final int slots = ast.slotCount < 0 ? new VariableResolver().resolve(ast) : ast.slotCount;
+        variableValues = new Literal[slots];
     }
 
     @Override
-    public void apply(final AST ast) {
-        variableValues = new LinkedList<>();
-        variableValues.add(new HashMap<>());
+    public void enter(final ASTNode node) {
+        node.accept(this);
+    }
 
-        traverseEvaluation(ast.root);
+    /**
+     * The walk over the tree is done by the FusedTransform, visiting a node only handles the node itself.
+     */
+    @Override
+    public Void visitChildren(final ASTNode node) {
+        return null;
     }
 
     /**
-     * Traverse through all nodes in tree
+     * Evaluate the assigned expression and remember its value
      *
      * @param node
      */
-    private void traverseEvaluation(final ASTNode node) {
-        if (node instanceof VariableAssignment) {
-            addVariable((VariableAssignment) node);
-        }
-        if (node instanceof Declaration) {
-            transformExpression(node);
+    @Override
+    public Void visitVariableAssignment(final VariableAssignment node) {
+        final Literal value = node.expression.accept(evaluator);
+        if (value != null) {
+            node.expression = value;
+            variableValues[node.name.slot] = value;
         }
+        return null;
+    }
 
-        if (node.getChildren().size() > 0) {
-            node.getChildren().forEach(this::traverseEvaluation);
+    /**
+     * Replace the expression of the declaration by its value
+     *
+     * @param node
+     */
+    @Override
+    public Void visitDeclaration(final Declaration node) {
+        final Literal value = node.expression.accept(evaluator);
+        if (value != null) {
+            node.expression = value;
         }
+        return null;
     }
 
     /**
-     * Add variable to variableValues list
+     * Replace the condition by its value, so RemoveIf can decide on it
      *
      * @param node
      */
-    private void addVariable(final VariableAssignment node) {
-        if (node.expression instanceof ColorLiteral) {
-            variableValues.get(0).put(node.name.name, (ColorLiteral) node.expression);
-        } else if (node.expression instanceof BoolLiteral) {
-            variableValues.get(0).put(node.name.name, (BoolLiteral) node.expression);
-        } else if (node.expression instanceof PixelLiteral) {
-            variableValues.get(0).put(node.name.name, (PixelLiteral) node.expression);
-        } else if (node.expression instanceof PercentageLiteral) {
-            variableValues.get(0).put(node.name.name, (PercentageLiteral) node.expression);
-        } else if (node.expression instanceof ScalarLiteral) {
-            variableValues.get(0).put(node.name.name, (ScalarLiteral) node.expression);
-        } else {
-            transformExpression(node.expression);
+    @Override
+    public Void visitIfClause(final IfClause node) {
+        final Literal value = node.conditionalExpression.accept(evaluator);
+        if (value != null) {
+            node.conditionalExpression = value;
         }
+        return null;
     }
 
-    private void transformExpression(final ASTNode expression) {
-        for (final ASTNode child : expression.getChildren()) {
-            if (child instanceof VariableReference) {
-                expression.removeChild(child);
-                expression.addChild(transformVariableReference((VariableReference) child));
-            }
-            if (child instanceof Operation) {
-                expression.removeChild(child);
-                expression.addChild(transformOperation((Operation) child));
-            }
+    /**
+     * Computes the value of an expression, or null when it can't be computed.
+     */
+    private class Evaluator extends ASTBaseVisitor<Literal> {
+
+        @Override
+        public Literal visitVariableReference(final VariableReference node) {
+            return node.slot == VariableReference.UNRESOLVED ? null : variableValues[node.slot];
         }
-    }
 
-    private Literal transformOperation(final Operation operation) {
-        if (!(operation.lhs instanceof Literal)) {
-            operation.removeChild(operation.lhs);
+        @Override
+        public Literal visitBoolLiteral(final BoolLiteral node) {
+            return node;
         }
-        if (operation.lhs instanceof VariableReference) {
-            operation.lhs = transformVariableReference((VariableReference) operation.lhs);
-        } else if (operation.lhs instanceof Operation) {
-            operation.lhs = transformOperation((Operation) operation.lhs);
+
+        @Override
+        public Literal visitColorLiteral(final ColorLiteral node) {
+            return node;
         }
 
-        if (!(operation.rhs instanceof Literal)) {
-            operation.removeChild(operation.rhs);
+        @Override
+        public Literal visitPercentageLiteral(final PercentageLiteral node) {
+            return node;
         }
-        if (operation.rhs instanceof VariableReference) {
-            operation.rhs = transformVariableReference((VariableReference) operation.rhs);
-        } else if (operation.rhs instanceof Operation) {
-            operation.rhs = transformOperation((Operation) operation.rhs);
+
+        @Override
+        public Literal visitPixelLiteral(final PixelLiteral node) {
+            return node;
         }
 
-        return executeOperation(operation);
-    }
+        @Override
+        public Literal visitScalarLiteral(final ScalarLiteral node) {
+            return node;
+        }
 
-    private Literal executeOperation(final Operation operation) {
-        if (operation instanceof MultiplyOperation) {
-            return multiply(operation);
+        @Override
+        public Literal visitAddOperation(final AddOperation node) {
+            final Literal lhs = node.lhs.accept(this);
+            final Literal rhs = node.rhs.accept(this);
+            return lhs == null || rhs == null ? null : add(lhs, rhs);
         }
-        if (operation instanceof SubtractOperation) {
-            return subtract(operation);
+
+        @Override
+        public Literal visitSubtractOperation(final SubtractOperation node) {
+            final Literal lhs = node.lhs.accept(this);
+            final Literal rhs = node.rhs.accept(this);
+            return lhs == null || rhs == null ? null : subtract(lhs, rhs);
         }
-        if (operation instanceof AddOperation) {
-            return add(operation);
+
+        @Override
+        public Literal visitMultiplyOperation(final MultiplyOperation node) {
+            final Literal lhs = node.lhs.accept(this);
+            final Literal rhs = node.rhs.accept(this);
+            return lhs == null || rhs == null ? null : multiply(lhs, rhs);
         }
+    }
 
-        return null;
+    private static ExpressionType typeOf(final Literal literal) {
+        return literal.accept(ExpressionTypeVisitor.INSTANCE);
     }
 
-    private Literal multiply(final Operation operation) {
-        if (operation.lhs instanceof ScalarLiteral && operation.rhs instanceof ScalarLiteral) {
-            return new ScalarLiteral(((ScalarLiteral) operation.lhs).value * ((ScalarLiteral) operation.rhs).value);
-        } else if (operation.rhs instanceof ScalarLiteral) {
-            if (operation.lhs instanceof PercentageLiteral) {
-                return new PercentageLiteral(((ScalarLiteral) operation.rhs).value * ((PercentageLiteral) operation.lhs).value);
-            }
-            if (operation.lhs instanceof PixelLiteral) {
-                return new PixelLiteral(((ScalarLiteral) operation.rhs).value * ((PixelLiteral) operation.lhs).value);
-            }
-        } else if (operation.lhs instanceof ScalarLiteral) {
-            if (operation.rhs instanceof PercentageLiteral) {
-                return new PercentageLiteral(((ScalarLiteral) operation.lhs).value * ((PercentageLiteral) operation.rhs).value);
-            }
-            if (operation.rhs instanceof PixelLiteral) {
-                return new PixelLiteral(((ScalarLiteral) operation.lhs).value * ((PixelLiteral) operation.rhs).value);
-            }
+    /**
+     * At least one of the operands is a scalar (the checker makes sure of that),
+     * the other one determines the type of the product.
+     */
+    private Literal multiply(final Literal lhs, final Literal rhs) {
+        if (typeOf(rhs) == ExpressionType.SCALAR) {
+            return scale(lhs, ((ScalarLiteral) rhs).value);
+        } else if (typeOf(lhs) == ExpressionType.SCALAR) {
+            return scale(rhs, ((ScalarLiteral) lhs).value);
         }
         return null;
     }
 
-    private Literal subtract(final Operation operation) {
-        if (operation.lhs instanceof ScalarLiteral) {
-            return new ScalarLiteral(((ScalarLiteral) operation.lhs).value - ((ScalarLiteral) operation.rhs).value);
-        } else if (operation.lhs instanceof PixelLiteral) {
-            return new PixelLiteral(((PixelLiteral) operation.lhs).value - ((PixelLiteral) operation.rhs).value);
-        } else if (operation.lhs instanceof PercentageLiteral) {
-            return new PercentageLiteral(((PercentageLiteral) operation.lhs).value - ((PercentageLiteral) operation.rhs).value);
+    private Literal scale(final Literal literal, final int factor) {
+        switch (typeOf(literal)) {
+            case SCALAR:
+                return ScalarLiteral.valueOf(((ScalarLiteral) literal).value * factor);
+            case PERCENTAGE:
+                return PercentageLiteral.valueOf(((PercentageLiteral) literal).value * factor);
+            case PIXEL:
+                return PixelLiteral.valueOf(((PixelLiteral) literal).value * factor);
+            default:
+                return null;
         }
-        return null;
     }
 
-    private Literal add(final Operation operation) {
-        if (operation.lhs instanceof ScalarLiteral) {
-            return new ScalarLiteral(((ScalarLiteral) operation.lhs).value + ((ScalarLiteral) operation.rhs).value);
-        } else if (operation.lhs instanceof PixelLiteral) {
-            return new PixelLiteral(((PixelLiteral) operation.lhs).value + ((PixelLiteral) operation.rhs).value);
-        } else if (operation.lhs instanceof PercentageLiteral) {
-            return new PercentageLiteral(((PercentageLiteral) operation.lhs).value + ((PercentageLiteral) operation.rhs).value);
+    /**
+     * Both operands have the same type, the checker makes sure of that.
+     */
+    private Literal subtract(final Literal lhs, final Literal rhs) {
+        switch (typeOf(lhs)) {
+            case SCALAR:
+                return ScalarLiteral.valueOf(((ScalarLiteral) lhs).value - ((ScalarLiteral) rhs).value);
+            case PIXEL:
+                return PixelLiteral.valueOf(((PixelLiteral) lhs).value - ((PixelLiteral) rhs).value);
+            case PERCENTAGE:
+                return PercentageLiteral.valueOf(((PercentageLiteral) lhs).value - ((PercentageLiteral) rhs).value);
+            default:
+                return null;
         }
-        return null;
     }
 
-    private Literal transformVariableReference(final VariableReference child) {
-        if (variableValues.get(0).get(child.name) != null) {
-            return variableValues.get(0).get(child.name);
+    private Literal add(final Literal lhs, final Literal rhs) {
+        switch (typeOf(lhs)) {
+            case SCALAR:
+                return ScalarLiteral.valueOf(((ScalarLiteral) lhs).value + ((ScalarLiteral) rhs).value);
+            case PIXEL:
+                return PixelLiteral.valueOf(((PixelLiteral) lhs).value + ((PixelLiteral) rhs).value);
+            case PERCENTAGE:
+                return PercentageLiteral.valueOf(((PercentageLiteral) lhs).value + ((PercentageLiteral) rhs).value);
+            default:
+                return null;
         }
-        return null;
     }
 }
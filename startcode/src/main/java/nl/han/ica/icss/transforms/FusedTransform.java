@@ -0,0 +1,60 @@
+package nl.han.ica.icss.transforms;
+
+import nl.han.ica.icss.ast.AST;
+import nl.han.ica.icss.ast.ASTNode;
+import nl.han.ica.icss.ast.Cancellation;
+import nl.han.ica.icss.ast.Stylesheet;
+
+/**
+ * Runs several node transforms in one walk over the AST instead of one walk per transform.
+ * On entering a node the transforms are applied in the given order, on leaving it in reverse
+ * order, so each transform sees the results of the ones registered before it.
+ * The walk stops between top-level statements when the thread is interrupted, see {@link Cancellation}.
+ */
+public class FusedTransform implements Transform {
+
+    private final NodeTransform[] transforms;
+
+    public FusedTransform(final NodeTransform... transforms) {
+        this.transforms = transforms.clone();
+    }
+
+    @Override
+    public void apply(final AST ast) {
+        for (final NodeTransform transform : transforms) {
+            transform.begin(ast);
+        }
+        walk(ast.root);
+    }
+
+    /**
+     * The names of the fused transforms, in order, e.g. {@code EvalExpressions+RemoveIf}.
+     */
+    @Override
+    public String toString() {
+        final StringBuilder names = new StringBuilder();
+        for (final NodeTransform transform : transforms) {
+            if (names.length() > 0) {
+                names.append('+');
+            }
+            names.append(transform.getClass().getSimpleName());
+        }
+        return names.toString();
+    }
+
+    private void walk(final ASTNode node) {
+        for (int i = 0; i < transforms.length; i++) {
+            transforms[i].enter(node);
+        }
+        final boolean statements = node instanceof Stylesheet;
+        for (int i = 0; i < node.getChildCount(); i++) {
+            if (statements) {
+                Cancellation.checkInterrupted();
+            }
+            walk(node.getChild(i));
+        }
+        for (int i = transforms.length - 1; i >= 0; i--) {
+            transforms[i].exit(node);
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package nl.han.ica.icss.transforms;
+
+import nl.han.ica.icss.ast.AST;
+import nl.han.ica.icss.ast.ASTNode;
+
+/**
+ * A transform that rewrites the AST one node at a time, so it can share a single walk over the
+ * tree with other node transforms (see {@link FusedTransform}).
+ * <p>
+ * The walk calls {@link #enter(ASTNode)} before and {@link #exit(ASTNode)} after the children of
+ * a node are visited. A transform may replace the children of the node it is called for, but not
+ * the node itself.
+ */
+public interface NodeTransform extends Transform {
+
+    /**
+     * Called once before the walk, to reset any state of a previous run.
+     */
+    default void begin(AST ast) {
+    }
+
+    default void enter(ASTNode node) {
+    }
+
+    default void exit(ASTNode node) {
+    }
+
+    @Override
+    default void apply(AST ast) {
+        new FusedTransform(this).apply(ast);
+    }
+}
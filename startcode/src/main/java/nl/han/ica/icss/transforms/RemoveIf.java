@@ -1,10 +1,60 @@
 package nl.han.ica.icss.transforms;
 
 import nl.han.ica.icss.ast.*;
+import nl.han.ica.icss.ast.literals.BoolLiteral;
 
-public class RemoveIf implements Transform {
+import java.util.ArrayList;
+
+/**
+ * Replaces every if-clause whose condition is TRUE by its body and drops the ones that are FALSE.
+ * Conditions must have been evaluated to a literal first (by EvalExpressions), if-clauses with any
+ * other condition are left alone.
+ * <p>
+ * The body is rewritten when leaving its owner, so nested if-clauses are already resolved by then.
+ */
+public class RemoveIf extends ASTBaseVisitor<Void> implements NodeTransform {
+
+    @Override
+    public void exit(final ASTNode node) {
+        node.accept(this);
+    }
+
+    @Override
+    public Void visitChildren(final ASTNode node) {
+        return null;
+    }
 
     @Override
-    public void apply(AST ast) {
+    public Void visitStylerule(final Stylerule node) {
+        node.body = removeIfClauses(node.body);
+        return null;
+    }
+
+    @Override
+    public Void visitIfClause(final IfClause node) {
+        node.body = removeIfClauses(node.body);
+        return null;
+    }
+
+    private ArrayList<ASTNode> removeIfClauses(final ArrayList<ASTNode> body) {
+        if (body.stream().noneMatch(child -> child instanceof IfClause && isDecided((IfClause) child))) {
+            return body;
+        }
+        final ArrayList<ASTNode> result = new ArrayList<>(body.size());
+        for (final ASTNode child : body) {
+            if (child instanceof IfClause && isDecided((IfClause) child)) {
+                final IfClause ifClause = (IfClause) child;
+                if (((BoolLiteral) ifClause.conditionalExpression).value) {
+                    result.addAll(ifClause.body);
+                }
+            } else {
+                result.add(child);
+            }
+        }
+        return result;
+    }
+
+    private boolean isDecided(final IfClause ifClause) {
+        return ifClause.conditionalExpression instanceof BoolLiteral;
     }
 }
@@ -0,0 +1,428 @@
+package nl.han.ica.icss;
+
+import nl.han.ica.icss.ast.AST;
+import nl.han.ica.icss.ast.CompactAST;
+import nl.han.ica.icss.ast.Declaration;
+import nl.han.ica.icss.ast.Expression;
+import nl.han.ica.icss.ast.Stylerule;
+import nl.han.ica.icss.ast.literals.ColorLiteral;
+import nl.han.ica.icss.ast.literals.PixelLiteral;
+import nl.han.ica.icss.generator.Generator;
+import nl.han.ica.icss.parser.Fixtures;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PipelineTest {
+
+	AST parse(String input, boolean twoStage) {
+		Pipeline pipeline = new Pipeline();
+		pipeline.setTwoStageParsing(twoStage);
+		pipeline.parseString(input);
+		assertTrue(pipeline.isParsed(), pipeline.getErrors().toString());
+		return pipeline.getAST();
+	}
+
+	@Test
+	void testTwoStageParsingYieldsSameAST() throws IOException {
+		AST[] expected = {Fixtures.uncheckedLevel0(), Fixtures.uncheckedLevel1(),
+				Fixtures.uncheckedLevel2(), Fixtures.uncheckedLevel3()};
+		for (int level = 0; level < expected.length; level++) {
+			String input = Fixtures.loadTestFile("level" + level + ".icss");
+			assertEquals(expected[level], parse(input, false));
+			assertEquals(expected[level], parse(input, true));
+		}
+	}
+
+	@Test
+	void testParseFileYieldsSameAST(@TempDir Path directory) throws IOException {
+		AST[] expected = {Fixtures.uncheckedLevel0(), Fixtures.uncheckedLevel1(),
+				Fixtures.uncheckedLevel2(), Fixtures.uncheckedLevel3()};
+		for (int level = 0; level < expected.length; level++) {
+			Path file = Files.writeString(directory.resolve("level" + level + ".icss"), Fixtures.loadTestFile("level" + level + ".icss"));
+			Pipeline pipeline = new Pipeline();
+			pipeline.parse(file);
+			assertTrue(pipeline.isParsed(), pipeline.getErrors().toString());
+			assertEquals(expected[level], pipeline.getAST());
+		}
+
+		//Not ASCII, so read as UTF-8 instead of mapped; the lexer reports the same error either way
+		String input = "p { width: 10px; } \u00e9";
+		Path file = Files.writeString(directory.resolve("utf8.icss"), input, StandardCharsets.UTF_8);
+		Pipeline pipeline = new Pipeline();
+		pipeline.parse(file);
+		Pipeline expectedPipeline = new Pipeline();
+		expectedPipeline.parseString(input);
+		assertFalse(pipeline.isParsed());
+		assertEquals(expectedPipeline.getErrors(), pipeline.getErrors());
+	}
+
+	@Test
+	void testCheckUsesLexicalScopes() throws IOException {
+		Pipeline pipeline = new Pipeline();
+		pipeline.parseString(Fixtures.loadTestFile("level3.icss"));
+		assertTrue(pipeline.check(), pipeline.getErrors().toString());
+
+		//A variable of one rule is not visible in the next rule
+		pipeline.parseString("p { W := 10px; width: W; } a { width: W; }");
+		assertFalse(pipeline.check());
+		assertEquals(1, pipeline.getErrors().size());
+
+		//Nor is a variable of an if body visible after the if
+		pipeline.parseString("C := TRUE; p { if[C] { W := 10px; width: W; } height: W; }");
+		assertFalse(pipeline.check());
+		assertEquals(1, pipeline.getErrors().size());
+	}
+
+	@Test
+	void testParallelCheckingReportsSameErrors() throws IOException {
+		//Globals change type between rules, rules have their own locals and refer to undefined ones
+		StringBuilder input = new StringBuilder(Fixtures.loadTestFile("level3.icss"));
+		for (int i = 0; i < 3000; i++) {
+			input.append(i % 7 == 0 ? "G := #00ff00;\n" : i % 5 == 0 ? "G := 3px;\n" : "");
+			input.append("#r").append(i).append(" { L := ").append(i).append("px; width: L; color: G;");
+			input.append(i % 3 == 0 ? " if [G] { height: U; }" : " height: G;").append(" }\n");
+		}
+
+		Pipeline sequential = new Pipeline();
+		sequential.parseString(input.toString());
+		assertFalse(sequential.check());
+		for (int run = 0; run < 3; run++) {
+			Pipeline parallel = new Pipeline();
+			parallel.setParallelChecking(true);
+			parallel.parseString(input.toString());
+			assertFalse(parallel.check());
+			assertEquals(sequential.getErrors(), parallel.getErrors());
+		}
+
+		Pipeline parallel = new Pipeline();
+		parallel.setParallelChecking(true);
+		parallel.parseString(Fixtures.loadTestFile("level3.icss"));
+		assertTrue(parallel.check(), parallel.getErrors().toString());
+	}
+
+	@Test
+	void testParallelGeneratingKeepsSourceOrder() {
+		StringBuilder input = new StringBuilder("W := 2px;\n");
+		for (int i = 0; i < Generator.PARALLEL_THRESHOLD + 3000; i++) {
+			input.append("#r").append(i).append(" { width: W * ").append(i).append("; }\n");
+		}
+		Pipeline pipeline = new Pipeline();
+		String expected = pipeline.compile(input.toString());
+
+		pipeline.setParallelGenerating(true);
+		assertEquals(expected, pipeline.generate());
+		assertTrue(expected.endsWith("#r" + (Generator.PARALLEL_THRESHOLD + 2999) + " {\n\twidth : "
+				+ 2 * (Generator.PARALLEL_THRESHOLD + 2999) + "px;\n}\n"));
+	}
+
+	@Test
+	void testCompileRecordsStats() throws IOException {
+		Pipeline pipeline = new Pipeline();
+		String css = pipeline.compile("W := 10px; p { width: W + 2px; }");
+		CompilationStats stats = pipeline.getStats();
+		for (CompilationStats.Stage stage : CompilationStats.Stage.values()) {
+			assertTrue(stats.hasRun(stage), stage.toString());
+		}
+		//W := 10px ; p { width : W + 2px ; } EOF
+		assertEquals(14, stats.getTokenCount());
+		//Stylesheet, assignment, reference, literal, rule, selector, declaration, property, operation, reference, literal
+		assertEquals(11, stats.getNodeCount());
+		assertEquals(5, stats.getMaxDepth());
+		assertEquals(css.length(), stats.getOutputSize());
+
+		StringBuilder out = new StringBuilder();
+		pipeline.generate(out);
+		assertEquals(out.length(), pipeline.getStats().getOutputSize());
+
+		//A new parse starts over
+		pipeline.reparseString("p { width: 1px; }");
+		assertFalse(pipeline.getStats().hasRun(CompilationStats.Stage.CHECK));
+	}
+
+	@Test
+	void testStagesAreRecordedAsFlightRecorderEvents(@TempDir Path directory) throws IOException {
+		Path file = Files.writeString(directory.resolve("level2.icss"), Fixtures.loadTestFile("level2.icss"));
+		Path dump = directory.resolve("compile.jfr");
+		try (Recording recording = new Recording()) {
+			for (String stage : new String[]{"Parse", "BuildAST", "Check", "Transform", "Generate"}) {
+				recording.enable("nl.han.ica.icss." + stage);
+			}
+			recording.start();
+			Pipeline pipeline = new Pipeline();
+			pipeline.parse(file);
+			assertTrue(pipeline.check());
+			pipeline.transform();
+			pipeline.generate();
+			recording.stop();
+			recording.dump(dump);
+		}
+
+		List<RecordedEvent> events = RecordingFile.readAllEvents(dump);
+		assertEquals(List.of("nl.han.ica.icss.Parse", "nl.han.ica.icss.BuildAST", "nl.han.ica.icss.Check",
+				"nl.han.ica.icss.Transform", "nl.han.ica.icss.Generate"),
+				events.stream().map(e -> e.getEventType().getName()).collect(Collectors.toList()));
+		for (RecordedEvent event : events) {
+			assertEquals(file.toString(), event.getString("sourceName"));
+			assertEquals(Files.size(file), event.getLong("inputSize"));
+			assertEquals(0, event.getInt("errorCount"));
+		}
+		assertEquals("EvalExpressions+RemoveIf", events.get(3).getString("transform"));
+		assertTrue(events.get(4).getLong("outputSize") > 0);
+	}
+
+	@Test
+	void testTransformEvaluatesVariablesPerScope() {
+		Pipeline pipeline = new Pipeline();
+		pipeline.parseString("W := 5px; p { W := 10px; width: W + 1px; } a { width: W; }");
+		assertTrue(pipeline.check(), pipeline.getErrors().toString());
+		pipeline.transform();
+
+		assertEquals("p {\n\twidth : 11px;\n}\na {\n\twidth : 5px;\n}\n", pipeline.generate());
+	}
+
+	@Test
+	void testTwoStageParsingFallsBackOnSyntaxError() {
+		String input = "p { width: 10px; ";
+
+		Pipeline fullContext = new Pipeline();
+		fullContext.setTwoStageParsing(false);
+		fullContext.parseString(input);
+
+		Pipeline twoStage = new Pipeline();
+		twoStage.parseString(input);
+
+		assertFalse(twoStage.isParsed());
+		assertEquals(1, twoStage.getFallbackCount());
+		assertEquals(fullContext.getErrors(), twoStage.getErrors());
+	}
+
+	@Test
+	void testDirectParsingYieldsSameAST() throws IOException {
+		String[] inputs = {Fixtures.loadTestFile("level2.icss"), Fixtures.loadTestFile("level3.icss"),
+				"W := 2px; p { width: 1px - 2px + 3px * 2 - W * 4 + 5%; X := TRUE; if [X] { if [FALSE] { a: 1; } b: #abcdef; } }",
+				"#menu { width: 10px; } .a-b { c := 1; }",
+				//Syntax errors are left to Antlr
+				"", "p { width: 10px; ", "p { }", "X := 1px + 2px;", "p { color: #ffffff + 1px; }", "p { width: 1px; } !"};
+		for (String input : inputs) {
+			Pipeline antlr = new Pipeline();
+			antlr.parseString(input);
+			Pipeline direct = new Pipeline();
+			direct.setDirectParsing(true);
+			direct.parseString(input);
+
+			assertEquals(antlr.isParsed(), direct.isParsed(), input);
+			assertEquals(antlr.getErrors(), direct.getErrors(), input);
+			assertEquals(antlr.getAST(), direct.getAST(), input);
+			//Only the fallback to Antlr builds the AST in a stage of its own
+			assertEquals(!direct.isParsed(), direct.getStats().hasRun(CompilationStats.Stage.BUILD_AST), input);
+		}
+
+		//The statement spans it records make reparsing possible
+		String input = Fixtures.loadTestFile("level2.icss");
+		String edited = input.replace("width: ParWidth + 2 * 10px;", "width: ParWidth + 3 * 10px;");
+		Pipeline pipeline = new Pipeline();
+		pipeline.setDirectParsing(true);
+		pipeline.parseString(input);
+		assertFalse(pipeline.getStats().hasRun(CompilationStats.Stage.BUILD_AST));
+		AST before = pipeline.getAST();
+		pipeline.reparseString(edited);
+		assertEquals(parse(edited, false), pipeline.getAST());
+		assertSame(before.root.body.get(0), pipeline.getAST().root.body.get(0));
+		assertNotSame(before.root.body.get(6), pipeline.getAST().root.body.get(6));
+	}
+
+	@Test
+	void testTransformRemovesIfClauses() throws IOException {
+		Pipeline pipeline = new Pipeline();
+		pipeline.parseString(Fixtures.loadTestFile("level3.icss"));
+		pipeline.transform();
+
+		assertEquals("p {\n" +
+				"\tbackground-color : #ffffff;\n" +
+				"\twidth : 500px;\n" +
+				"\tcolor : #124532;\n" +
+				"}\n" +
+				"a {\n" +
+				"\tcolor : #ff0000;\n" +
+				"}\n" +
+				"#menu {\n" +
+				"\twidth : 520px;\n" +
+				"}\n" +
+				".menu {\n" +
+				"\tcolor : #000000;\n" +
+				"\tbackground-color : #ff0000;\n" +
+				"}\n", pipeline.generate());
+	}
+
+	@Test
+	void testReparseOnlyParsesEditedStatements() throws IOException {
+		String input = Fixtures.loadTestFile("level2.icss");
+		String edited = input.replace("width: ParWidth + 2 * 10px;", "width: ParWidth + 3 * 10px;\n\theight: 20px;");
+
+		Pipeline pipeline = new Pipeline();
+		pipeline.parseString(input);
+		AST before = pipeline.getAST();
+		pipeline.reparseString(edited);
+		AST after = pipeline.getAST();
+
+		assertTrue(pipeline.isParsed());
+		assertEquals(parse(edited, false), after);
+		for (int i = 0; i < before.root.body.size(); i++) {
+			if (i == 6) {
+				assertNotSame(before.root.body.get(i), after.root.body.get(i));
+			} else {
+				assertSame(before.root.body.get(i), after.root.body.get(i));
+			}
+		}
+
+		pipeline.reparseString(edited.replace("#menu {", "#menu "));
+		assertFalse(pipeline.isParsed());
+	}
+
+	@Test
+	void testCompileWithCache() throws IOException {
+		CompilationCache cache = new CompilationCache(1);
+		String level0 = Fixtures.loadTestFile("level0.icss");
+		String level1 = Fixtures.loadTestFile("level1.icss");
+
+		Pipeline first = new Pipeline();
+		first.setCache(cache);
+		String css = first.compile(level0);
+
+		Pipeline second = new Pipeline();
+		second.setCache(cache);
+		assertSame(css, second.compile(level0));
+		assertSame(first.getAST(), second.getAST());
+		assertTrue(second.isTransformed());
+		//Neither pipeline may change the AST it shares with the cache, until it parses again
+		assertThrows(IllegalStateException.class, second::check);
+		assertThrows(IllegalStateException.class, first::transform);
+		second.parseString(level0);
+		assertTrue(second.check());
+
+		assertNull(second.compile("p { color: 10px; }"));
+		assertFalse(second.getErrors().isEmpty());
+		assertEquals(css, second.compile(level0));
+
+		assertEquals(1, cache.getHits());
+		assertEquals(3, cache.getMisses());
+		assertEquals(2, cache.getEvictions());
+		assertEquals(1, cache.size());
+		assertNotSame(css, first.compile(level1));
+	}
+
+	@Test
+	void testCompactASTMatchesObjectTree() throws IOException {
+		AST[] expected = {Fixtures.uncheckedLevel0(), Fixtures.uncheckedLevel1(),
+				Fixtures.uncheckedLevel2(), Fixtures.uncheckedLevel3()};
+		for (int level = 0; level < expected.length; level++) {
+			String input = Fixtures.loadTestFile("level" + level + ".icss");
+			for (boolean twoStage : new boolean[]{false, true}) {
+				Pipeline pipeline = new Pipeline();
+				pipeline.setTwoStageParsing(twoStage);
+				CompactAST compact = pipeline.parseCompact(input);
+				assertEquals(expected[level], compact.toAST());
+			}
+			assertEquals(expected[level], CompactAST.fromAST(expected[level]).toAST());
+		}
+
+		//Operations are built from parser events in a different order than the tree nesting
+		String operations = "p { width: 1px + 2 * 3px - 4px * 5 + X; }";
+		assertEquals(parse(operations, false), new Pipeline().parseCompact(operations).toAST());
+
+		assertNull(new Pipeline().parseCompact("p { width: 10px; "));
+	}
+
+	@Test
+	void testCompileCompactStatementByStatement() throws IOException {
+		for (int level = 0; level < 4; level++) {
+			String input = Fixtures.loadTestFile("level" + level + ".icss");
+			Pipeline pipeline = new Pipeline();
+			String expected = pipeline.compile(input);
+
+			StringBuilder out = new StringBuilder();
+			assertTrue(pipeline.compile(pipeline.parseCompact(input), out), pipeline.getErrors().toString());
+			assertEquals(expected, out.toString());
+		}
+
+		Pipeline pipeline = new Pipeline();
+		String input = "W := 5px; p { W := 10px; width: W; } W := 20%; a { width: W; }";
+		StringBuilder out = new StringBuilder();
+		assertTrue(pipeline.compile(pipeline.parseCompact(input), out));
+		assertEquals("p {\n\twidth : 10px;\n}\na {\n\twidth : 20%;\n}\n", out.toString());
+
+		input += " b { color: W; }";
+		assertFalse(pipeline.compile(pipeline.parseCompact(input), new StringBuilder()));
+		assertEquals(1, pipeline.getErrors().size());
+	}
+
+	@Test
+	void testLiteralsAreShared() {
+		Pipeline pipeline = new Pipeline();
+		pipeline.parseString("p { width: 10px; height: 10px; color: #0a0b0c; } a { width: 4px + 6px; }");
+		pipeline.transform();
+
+		Stylerule p = (Stylerule) pipeline.getAST().root.body.get(0);
+		Stylerule a = (Stylerule) pipeline.getAST().root.body.get(1);
+		Expression width = ((Declaration) p.body.get(0)).expression;
+		assertSame(width, ((Declaration) p.body.get(1)).expression);
+		assertSame(width, ((Declaration) a.body.get(0)).expression);
+		assertSame(PixelLiteral.valueOf(10), width);
+
+		ColorLiteral color = (ColorLiteral) ((Declaration) p.body.get(2)).expression;
+		assertEquals(0x0a0b0c, color.value);
+		assertEquals("#0a0b0c", color.toString());
+		assertSame(ColorLiteral.valueOf("#0a0b0c"), color);
+
+		//A shared literal ignores errors, they belong on the enclosing node
+		width.setError("shared");
+		assertFalse(width.hasError());
+	}
+
+	@Test
+	void testInterruptCancelsStages() throws IOException {
+		String input = Fixtures.loadTestFile("level3.icss");
+		for (boolean direct : new boolean[]{false, true}) {
+			Pipeline pipeline = new Pipeline();
+			pipeline.setDirectParsing(direct);
+			try {
+				Thread.currentThread().interrupt();
+				assertThrows(CancellationException.class, () -> pipeline.parseString(input));
+				assertFalse(pipeline.isParsed());
+
+				Thread.interrupted();
+				pipeline.parseString(input);
+				Thread.currentThread().interrupt();
+				assertThrows(CancellationException.class, pipeline::check);
+				assertFalse(pipeline.isChecked());
+
+				Thread.interrupted();
+				assertTrue(pipeline.check());
+				Thread.currentThread().interrupt();
+				assertThrows(CancellationException.class, pipeline::transform);
+				assertThrows(CancellationException.class, () -> pipeline.generate());
+			} finally {
+				Thread.interrupted();
+			}
+		}
+	}
+}
@@ -0,0 +1,150 @@
+package nl.han.ica.icss.ast;
+
+import nl.han.ica.icss.Pipeline;
+import nl.han.ica.icss.parser.Fixtures;
+import nl.han.ica.icss.ast.literals.PixelLiteral;
+import nl.han.ica.icss.ast.operations.AddOperation;
+import nl.han.ica.icss.ast.selectors.TagSelector;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ASTFileTest {
+
+	@TempDir
+	Path directory;
+
+	AST roundTrip(AST ast) throws IOException {
+		Path file = directory.resolve("ast.bin");
+		ASTFile.write(ast, file);
+		return ASTFile.read(file);
+	}
+
+	@Test
+	void testRoundTripFixtures() throws IOException {
+		AST[] fixtures = {Fixtures.uncheckedLevel0(), Fixtures.uncheckedLevel1(),
+				Fixtures.uncheckedLevel2(), Fixtures.uncheckedLevel3()};
+		for (AST fixture : fixtures) {
+			assertEquals(fixture, roundTrip(fixture));
+		}
+	}
+
+	@Test
+	void testIfClauseWithoutCondition() throws IOException {
+		//Antlr's error recovery can leave the condition out
+		IfClause ifClause = new IfClause();
+		ifClause.addChild(new Declaration("width").addChild(new PixelLiteral("1px")));
+		Stylesheet stylesheet = new Stylesheet();
+		stylesheet.addChild(new Stylerule().addChild(new TagSelector("p")).addChild(ifClause));
+		AST ast = new AST(stylesheet);
+
+		assertEquals(1, ifClause.getChildCount());
+		assertTrue(ifClause.getChild(0) instanceof Declaration);
+		new ASTBaseVisitor<Void>().visitChildren(ast.root);
+		assertEquals(ast, roundTrip(ast));
+	}
+
+	@Test
+	void testRoundTripCheckedAST() throws IOException {
+		for (int level = 0; level < 4; level++) {
+			Pipeline pipeline = new Pipeline();
+			pipeline.parseString(Fixtures.loadTestFile("level" + level + ".icss"));
+			assertTrue(pipeline.check());
+			Path file = directory.resolve("level" + level + ".bin");
+			pipeline.save(file);
+
+			Pipeline loaded = new Pipeline();
+			loaded.load(file);
+			assertEquals(pipeline.getAST(), loaded.getAST());
+			assertEquals(pipeline.getAST().slotCount, loaded.getAST().slotCount);
+			assertTrue(loaded.check());
+			loaded.transform();
+			pipeline.transform();
+			assertEquals(pipeline.generate(), loaded.generate());
+		}
+
+		//Errors and slots of the references are kept
+		Pipeline pipeline = new Pipeline();
+		pipeline.parseString("W := 5px; p { color: W; width: H; }");
+		assertFalse(pipeline.check());
+		AST read = roundTrip(pipeline.getAST());
+		assertEquals(pipeline.getAST().getErrors().toString(), read.getErrors().toString());
+		Stylerule rule = (Stylerule) read.root.body.get(1);
+		assertEquals(0, ((VariableReference) ((Declaration) rule.body.get(0)).expression).slot);
+		assertEquals(VariableReference.UNRESOLVED, ((VariableReference) ((Declaration) rule.body.get(1)).expression).slot);
+	}
+
+	@Test
+	void testRejectsOtherVersions() throws IOException {
+		Path file = directory.resolve("ast.bin");
+		ASTFile.write(Fixtures.uncheckedLevel0(), file);
+		byte[] bytes = Files.readAllBytes(file);
+		ByteBuffer.wrap(bytes).putShort(4, (short) (ASTFile.VERSION + 1));
+		Files.write(file, bytes);
+
+		assertThrows(IOException.class, () -> ASTFile.read(file));
+	}
+
+	@Test
+	void testRejectsCorruptFiles() throws IOException {
+		Path file = directory.resolve("ast.bin");
+		Pipeline pipeline = new Pipeline();
+		pipeline.parseString("W := 5px; p { color: W; width: H + 2px; }");
+		assertFalse(pipeline.check());
+		ASTFile.write(pipeline.getAST(), file);
+		byte[] bytes = Files.readAllBytes(file);
+
+		//Truncated anywhere
+		for (int length = 0; length < bytes.length; length++) {
+			Files.write(file, Arrays.copyOf(bytes, length));
+			assertThrows(IOException.class, () -> ASTFile.read(file));
+		}
+
+		//Counts that don't fit in the file
+		for (int count : new int[]{-1, Integer.MAX_VALUE}) {
+			byte[] corrupt = bytes.clone();
+			ByteBuffer.wrap(corrupt).putInt(12, count);
+			Files.write(file, corrupt);
+			assertThrows(IOException.class, () -> ASTFile.read(file));
+		}
+
+		//Random damage either reads or gives an IOException, never anything else
+		Random random = new Random(15);
+		for (int i = 0; i < 5000; i++) {
+			byte[] corrupt = bytes.clone();
+			for (int j = 1 + random.nextInt(3); j > 0; j--) {
+				corrupt[12 + random.nextInt(corrupt.length - 12)] = (byte) random.nextInt(256);
+			}
+			Files.write(file, corrupt);
+			try {
+				ASTFile.read(file);
+			} catch (IOException e) {
+				//Expected for most
+			}
+		}
+	}
+
+	@Test
+	void testRejectsDeepNesting() {
+		Expression expression = new PixelLiteral(1);
+		for (int i = 0; i < ASTFile.MAX_DEPTH; i++) {
+			expression = (Expression) new AddOperation().addChild(expression).addChild(new PixelLiteral(1));
+		}
+		Stylesheet stylesheet = new Stylesheet();
+		stylesheet.addChild(new Stylerule().addChild(new TagSelector("p"))
+				.addChild(new Declaration("width").addChild(expression)));
+
+		assertThrows(IOException.class, () -> ASTFile.write(new AST(stylesheet), directory.resolve("deep.bin")));
+	}
+}
@@ -0,0 +1,47 @@
+package nl.han.ica.icss.cli;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class BatchCompilerTest {
+
+	@TempDir
+	Path directory;
+
+	@Test
+	void testRejectsFilesThatAreNotICSS() throws IOException {
+		Path style = Files.writeString(directory.resolve("style.icss"), "p { width: 1px; }");
+		Files.writeString(directory.resolve("a.i"), "p { width: 1px; }");
+		Files.writeString(directory.resolve("style.txt"), "p { width: 1px; }");
+		BatchCompiler compiler = new BatchCompiler(null);
+
+		Map<Path, Path> files = compiler.collect(List.of(style.toString()));
+		assertEquals(List.of(style), List.copyOf(files.keySet()));
+		assertThrows(IOException.class, () -> compiler.collect(List.of(directory.resolve("a.i").toString())));
+		assertThrows(IOException.class, () -> compiler.collect(List.of(directory.resolve("style.txt").toString())));
+
+		//A directory only yields its ICSS files
+		assertEquals(List.of(style), List.copyOf(compiler.collect(List.of(directory.toString())).keySet()));
+	}
+
+	@Test
+	void testOutputPath() {
+		BatchCompiler compiler = new BatchCompiler(null);
+		assertEquals(directory.resolve("style.css"), compiler.outputPath(directory.resolve("style.icss"), directory));
+		assertEquals(directory.resolve("a.i.css"), compiler.outputPath(directory.resolve("a.i"), directory));
+		assertEquals(directory.resolve("style.txt.css"), compiler.outputPath(directory.resolve("style.txt"), directory));
+
+		Path out = directory.resolve("out");
+		assertEquals(out.resolve("sub/style.css"),
+				new BatchCompiler(out).outputPath(directory.resolve("sub/style.icss"), directory));
+	}
+}
@@ -0,0 +1,103 @@
+package nl.han.ica.icss.cli;
+
+import nl.han.ica.icss.CompilationCache;
+import nl.han.ica.icss.Pipeline;
+import nl.han.ica.icss.parser.Fixtures;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CompileDaemonTest {
+
+	@TempDir
+	Path directory;
+
+	@Test
+	void testCompilesLikeThePipeline() throws Exception {
+		for (CompilationCache cache : new CompilationCache[]{null, new CompilationCache(8)}) {
+			try (CompileDaemon daemon = new CompileDaemon(0, 2, cache);
+				 CompileClient client = new CompileClient(daemon.getPort())) {
+				for (int level = 0; level < 4; level++) {
+					String input = Fixtures.loadTestFile("level" + level + ".icss");
+					String expected = new Pipeline().compile(input);
+					Path file = Files.writeString(directory.resolve("level" + level + ".icss"), input);
+
+					//Several requests on one connection
+					assertEquals(expected, client.compile(input).css);
+					assertEquals(expected, client.compile(file).css);
+				}
+
+				CompileClient.Result result = client.compile("p { width: W; }");
+				assertNull(result.css);
+				assertEquals(1, result.errors.size());
+
+				result = client.compile(directory.resolve("missing.icss"));
+				assertNull(result.css);
+				assertEquals(1, result.errors.size());
+			}
+		}
+	}
+
+	@Test
+	void testIdleConnectionsDontBlockWorkers() throws Exception {
+		try (CompileDaemon daemon = new CompileDaemon(0, 1, null);
+			 CompileClient idle1 = new CompileClient(daemon.getPort());
+			 CompileClient idle2 = new CompileClient(daemon.getPort());
+			 CompileClient client = new CompileClient(daemon.getPort())) {
+			String input = Fixtures.loadTestFile("level0.icss");
+			assertEquals(new Pipeline().compile(input), client.compile(input).css);
+			assertEquals(new Pipeline().compile(input), idle1.compile(input).css);
+		}
+	}
+
+	@Test
+	void testRefusesConnectionsOverTheLimit() throws Exception {
+		String input = Fixtures.loadTestFile("level0.icss");
+		String expected = new Pipeline().compile(input);
+		try (CompileDaemon daemon = new CompileDaemon(0, 1, 1, null)) {
+			try (CompileClient client = new CompileClient(daemon.getPort())) {
+				assertEquals(expected, client.compile(input).css);
+				try (CompileClient refused = new CompileClient(daemon.getPort())) {
+					CompileClient.Result result = refused.compile(input);
+					assertNull(result.css);
+					assertEquals(List.of("Too many connections, at most 1"), result.errors);
+				}
+			}
+
+			//The connection's thread is free again once the daemon sees it closed
+			long deadline = System.currentTimeMillis() + 5_000;
+			while (true) {
+				try (CompileClient client = new CompileClient(daemon.getPort())) {
+					if (expected.equals(client.compile(input).css)) {
+						break;
+					}
+				}
+				assertTrue(System.currentTimeMillis() < deadline, "Timed out");
+				Thread.sleep(10);
+			}
+		}
+	}
+
+	@Test
+	void testStop() throws Exception {
+		CompileDaemon daemon = new CompileDaemon(0, 1, null);
+		int port = daemon.getPort();
+		try (CompileClient client = new CompileClient(port)) {
+			assertFalse(daemon.awaitClose(10, TimeUnit.MILLISECONDS));
+			client.stop();
+		}
+		assertTrue(daemon.awaitClose(5, TimeUnit.SECONDS));
+		assertThrows(IOException.class, () -> new CompileClient(port));
+	}
+}
@@ -0,0 +1,85 @@
+package nl.han.ica.icss.cli;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class WatchCompilerTest {
+
+	@TempDir
+	Path directory;
+
+	static void await(BooleanSupplier condition) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 10_000;
+		while (!condition.getAsBoolean()) {
+			assertTrue(System.currentTimeMillis() < deadline, "Timed out");
+			Thread.sleep(10);
+		}
+	}
+
+	static String read(Path file) {
+		try {
+			return Files.exists(file) ? Files.readString(file) : null;
+		} catch (Exception e) {
+			return null;
+		}
+	}
+
+	@Test
+	void testRecompilesChangedFiles() throws Exception {
+		Path a = Files.writeString(directory.resolve("a.icss"), "p { width: 1px; }");
+		Files.createDirectory(directory.resolve("sub"));
+		Path b = Files.writeString(directory.resolve("sub/b.icss"), "a { width: 2px; }");
+		List<String> log = new CopyOnWriteArrayList<>();
+
+		try (WatchCompiler watcher = new WatchCompiler(directory, null, 20, log::add)) {
+			Thread thread = new Thread(() -> {
+				try {
+					watcher.run();
+				} catch (Exception e) {
+					log.add(e.toString());
+				}
+			});
+			thread.start();
+
+			//Everything is compiled at the start
+			await(() -> "a {\n\twidth : 2px;\n}\n".equals(read(directory.resolve("sub/b.css"))));
+			await(() -> "p {\n\twidth : 1px;\n}\n".equals(read(directory.resolve("a.css"))));
+			await(() -> log.contains("Watching " + directory.toAbsolutePath()));
+
+			Files.writeString(a, "W := 3px; p { width: W; }");
+			await(() -> "p {\n\twidth : 3px;\n}\n".equals(read(directory.resolve("a.css"))));
+			assertEquals(0, watcher.getCompiled(a).errors.size());
+			//Only the changed file was compiled again
+			assertEquals(1, log.stream().filter(line -> line.startsWith("Compiled sub")).count());
+
+			//A file with errors keeps its last CSS
+			Files.writeString(b, "a { width: W; }");
+			await(() -> watcher.getCompiled(b).errors.size() == 1);
+			assertEquals("a {\n\twidth : 2px;\n}\n", read(directory.resolve("sub/b.css")));
+
+			//New directories are watched too
+			Files.createDirectory(directory.resolve("new"));
+			Files.writeString(directory.resolve("new/c.icss"), "#c { color: #ffffff; }");
+			await(() -> "#c {\n\tcolor : #ffffff;\n}\n".equals(read(directory.resolve("new/c.css"))));
+
+			//Deleting a file deletes its CSS
+			Files.delete(a);
+			await(() -> !Files.exists(directory.resolve("a.css")));
+			await(() -> watcher.getCompiled(a) == null);
+
+			watcher.close();
+			thread.join(5000);
+			assertFalse(thread.isAlive());
+		}
+	}
+}
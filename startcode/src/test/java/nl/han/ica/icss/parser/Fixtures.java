@@ -11,8 +11,24 @@ import nl.han.ica.icss.ast.selectors.ClassSelector;
 import nl.han.ica.icss.ast.selectors.IdSelector;
 import nl.han.ica.icss.ast.selectors.TagSelector;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
 public class Fixtures {
 
+	/**
+	 * @return the text of a resource on the classpath, such as {@code level0.icss}
+	 */
+	public static String loadTestFile(String resource) throws IOException {
+		try (InputStream inputStream = Fixtures.class.getClassLoader().getResourceAsStream(resource)) {
+			if (inputStream == null) {
+				throw new IOException("No test file " + resource);
+			}
+			return new String(inputStream.readAllBytes(), StandardCharsets.UTF_8);
+		}
+	}
+
     public static AST uncheckedLevel0() {
 		Stylesheet stylesheet = new Stylesheet();
 		/*
@@ -0,0 +1,109 @@
+package nl.han.ica.icss.parser;
+
+import nl.han.ica.icss.Pipeline;
+import org.antlr.v4.runtime.*;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ICSSScannerTest {
+
+	//Pieces of ICSS and things that are almost ICSS
+	static final String[] FRAGMENTS = {
+			"if", "iff", "TRUE", "TRUEX", "FALSE", "FALS", "[", "]", "{", "}", ";", ":", ":=", "=", "+", "-", "*",
+			"12", "0px", "3p", "4pxa", "50%", "%", "#", "#abcdef", "#abcdeff", "#0a1b2c-", "#ab", "#ABCDEF", "#_",
+			".", ".menu", ".a-b", "p", "width", "a-1", "Var_1", "X", "_", " ", "\t", "\r\n", "\n", "!", "é", "😀"
+	};
+
+	@TempDir
+	Path directory;
+
+	//Every token with everything the parser can see of it, followed by the errors
+	static List<String> lex(TokenSource lexer) {
+		List<String> result = new ArrayList<>();
+		BaseErrorListener listener = new BaseErrorListener() {
+			public void syntaxError(Recognizer<?, ?> recognizer, Object offendingSymbol, int line, int charPositionInLine, String msg, RecognitionException e) {
+				result.add("error " + line + ":" + charPositionInLine + " " + msg);
+			}
+		};
+		if (lexer instanceof Lexer) {
+			((Lexer) lexer).removeErrorListeners();
+			((Lexer) lexer).addErrorListener(listener);
+		} else {
+			((ScannerTokenSource) lexer).removeErrorListeners();
+			((ScannerTokenSource) lexer).addErrorListener(listener);
+		}
+
+		Token token;
+		do {
+			token = lexer.nextToken();
+			result.add(token.getType() + " '" + token.getText() + "' " + token.getStartIndex() + "-" + token.getStopIndex()
+					+ " " + token.getLine() + ":" + token.getCharPositionInLine() + " channel " + token.getChannel());
+		} while (token.getType() != Token.EOF);
+		result.add("end " + lexer.getLine() + ":" + lexer.getCharPositionInLine());
+		return result;
+	}
+
+	static void assertSameTokens(String input) {
+		assertEquals(lex(new ICSSLexer(CharStreams.fromString(input))),
+				lex(new ScannerTokenSource(CharStreams.fromString(input))), input);
+	}
+
+	@Test
+	void testFixtures() throws IOException {
+		for (int level = 0; level < 4; level++) {
+			String input = Fixtures.loadTestFile("level" + level + ".icss");
+			assertSameTokens(input);
+
+			//Memory-mapped input is scanned in place
+			Path file = Files.writeString(directory.resolve("level" + level + ".icss"), input);
+			CharStream mapped = MappedCharStream.fromPath(file);
+			assertTrue(mapped instanceof MappedCharStream);
+			assertEquals(lex(new ICSSLexer(CharStreams.fromString(input))), lex(new ScannerTokenSource(mapped)));
+		}
+	}
+
+	@Test
+	void testFuzzedInput() {
+		Random random = new Random(2020);
+		for (int i = 0; i < 20_000; i++) {
+			StringBuilder input = new StringBuilder();
+			int fragments = random.nextInt(12);
+			for (int j = 0; j < fragments; j++) {
+				if (random.nextInt(4) == 0) {
+					//Any printable ASCII character
+					input.append((char) (' ' + random.nextInt(95)));
+				} else {
+					input.append(FRAGMENTS[random.nextInt(FRAGMENTS.length)]);
+				}
+			}
+			assertSameTokens(input.toString());
+		}
+	}
+
+	@Test
+	void testParsesLikeTheGeneratedLexer() throws IOException {
+		List<String> inputs = new ArrayList<>();
+		for (int level = 0; level < 4; level++) {
+			inputs.add(Fixtures.loadTestFile("level" + level + ".icss"));
+		}
+		inputs.add("p { width: 10px; } ! #ABC { }");
+		for (String input : inputs) {
+			Pipeline antlr = new Pipeline();
+			Pipeline scanner = new Pipeline();
+			scanner.setHandWrittenLexer(true);
+			assertEquals(antlr.compile(input), scanner.compile(input));
+			assertEquals(antlr.getErrors(), scanner.getErrors());
+			assertEquals(antlr.getAST(), scanner.getAST());
+		}
+	}
+}
@@ -5,7 +5,8 @@ import org.antlr.v4.runtime.*;
 import org.antlr.v4.runtime.misc.ParseCancellationException;
 import org.antlr.v4.runtime.tree.ParseTree;
 import org.antlr.v4.runtime.tree.ParseTreeWalker;
-import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
 
 import java.io.IOException;
 import java.io.InputStream;
@@ -15,7 +16,8 @@ import static org.junit.jupiter.api.Assertions.fail;
 
 class ParserTest {
 
-	AST parseTestFile(String resource) throws IOException {
+	//direct: with the hand-written ASTParser instead of Antlr's parser and ASTListener
+	AST parseTestFile(String resource, boolean direct) throws IOException {
 
 		//Open test file to parse
 		ClassLoader classLoader = this.getClass().getClassLoader();
@@ -26,6 +28,15 @@ class ParserTest {
 
 	    CommonTokenStream tokens = new CommonTokenStream(lexer);
 
+		if (direct) {
+			tokens.fill();
+			try {
+				return new ASTParser(tokens.getTokens()).parse();
+			} catch(ParseCancellationException e) {
+				fail(e.getMessage());
+			}
+		}
+
         ICSSParser parser = new ICSSParser(tokens);
 		parser.setErrorHandler(new BailErrorStrategy());
 
@@ -55,31 +66,35 @@ class ParserTest {
 		return listener.getAST();
 	}
 
-	@Test
-	void testParseLevel0() throws IOException {
+	@ParameterizedTest(name = "{0}")
+	@ValueSource(strings = {"antlr", "direct"})
+	void testParseLevel0(String parser) throws IOException {
 
-		AST sut = parseTestFile("level0.icss");
+		AST sut = parseTestFile("level0.icss", parser.equals("direct"));
 		AST exp = Fixtures.uncheckedLevel0();
 		assertEquals(exp,sut);
 	}
-	@Test
-	void testParseLevel1() throws IOException {
+	@ParameterizedTest(name = "{0}")
+	@ValueSource(strings = {"antlr", "direct"})
+	void testParseLevel1(String parser) throws IOException {
 
-		AST sut = parseTestFile("level1.icss");
+		AST sut = parseTestFile("level1.icss", parser.equals("direct"));
 		AST exp = Fixtures.uncheckedLevel1();
 		assertEquals(exp,sut);
 	}
-	@Test
-	void testParseLevel2() throws IOException {
+	@ParameterizedTest(name = "{0}")
+	@ValueSource(strings = {"antlr", "direct"})
+	void testParseLevel2(String parser) throws IOException {
 
-		AST sut = parseTestFile("level2.icss");
+		AST sut = parseTestFile("level2.icss", parser.equals("direct"));
 		AST exp = Fixtures.uncheckedLevel2();
 		assertEquals(exp,sut);
 	}
-	@Test
-	void testParseLevel3() throws IOException {
+	@ParameterizedTest(name = "{0}")
+	@ValueSource(strings = {"antlr", "direct"})
+	void testParseLevel3(String parser) throws IOException {
 
-		AST sut = parseTestFile("level3.icss");
+		AST sut = parseTestFile("level3.icss", parser.equals("direct"));
 		AST exp = Fixtures.uncheckedLevel3();
 		assertEquals(exp,sut);
 	}